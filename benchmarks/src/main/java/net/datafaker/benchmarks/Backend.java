@@ -0,0 +1,99 @@
+package net.datafaker.benchmarks;
+
+import net.datafaker.service.FakerContext;
+import net.datafaker.service.llm.LlmFakeValuesService;
+import net.datafaker.service.ollama.OllamaClient;
+import net.datafaker.service.ollama.OllamaFakeValuesService;
+import net.datafaker.service.openai.OpenAIFakeValuesService;
+
+import java.util.List;
+
+/**
+ * The services which can be benchmarked, all of them talking to a {@link StubModelServer}.
+ */
+public enum Backend {
+
+    OPENAI {
+        @Override
+        ExposedService create(StubModelServer server) {
+            var service = new ExposedOpenAIService();
+            service.setEndpoint(server.openAIEndpoint());
+            return service;
+        }
+    },
+    OLLAMA {
+        @Override
+        ExposedService create(StubModelServer server) {
+            return new ExposedOllamaService(new OllamaClient(List.of(server.ollamaHost())));
+        }
+    };
+
+    abstract ExposedService create(StubModelServer server);
+
+    /**
+     * Makes the protected hooks of a service callable from the benchmarks.
+     */
+    interface ExposedService {
+        LlmFakeValuesService service();
+
+        String formatKey(String key);
+
+        String createPrompt(String key, int amount, FakerContext context);
+
+        List<String> parseValues(String text);
+    }
+
+    private static final class ExposedOpenAIService extends OpenAIFakeValuesService implements ExposedService {
+
+        private ExposedOpenAIService() {
+            super("stub");
+        }
+
+        @Override
+        public LlmFakeValuesService service() {
+            return this;
+        }
+
+        @Override
+        public String formatKey(String key) {
+            return super.formatKey(key);
+        }
+
+        @Override
+        public String createPrompt(String key, int amount, FakerContext context) {
+            return super.createPrompt(key, amount, context);
+        }
+
+        @Override
+        public List<String> parseValues(String text) {
+            return super.parseValues(text);
+        }
+    }
+
+    private static final class ExposedOllamaService extends OllamaFakeValuesService implements ExposedService {
+
+        private ExposedOllamaService(OllamaClient client) {
+            super("gemma", client);
+        }
+
+        @Override
+        public LlmFakeValuesService service() {
+            return this;
+        }
+
+        @Override
+        public String formatKey(String key) {
+            return super.formatKey(key);
+        }
+
+        @Override
+        public String createPrompt(String key, int amount, FakerContext context) {
+            return super.createPrompt(key, amount, context);
+        }
+
+        @Override
+        public List<String> parseValues(String text) {
+            return super.parseValues(text);
+        }
+    }
+}
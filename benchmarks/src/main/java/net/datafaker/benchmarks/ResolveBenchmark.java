@@ -0,0 +1,122 @@
+package net.datafaker.benchmarks;
+
+import net.datafaker.Faker;
+import net.datafaker.service.FakerContext;
+import net.datafaker.service.RandomService;
+import net.datafaker.service.llm.LlmFakeValuesService;
+import net.datafaker.service.llm.PoolStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures resolving a value through {@link Faker}, both when values are cached (warm) and when every value needs
+ * a round-trip to the model (cold). The contended variants resolve from several threads at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResolveBenchmark {
+
+    @Param({"OPENAI", "OLLAMA"})
+    public Backend backend;
+
+    /**
+     * The time the stub model needs for every completion.
+     */
+    @Param({"0"})
+    public long latencyMillis;
+
+    /**
+     * How the warm service keeps its values: as strings, or as bytes in a heap or direct arena.
+     */
+    @Param({"LIST", "HEAP_ARENA", "DIRECT_ARENA"})
+    public String storage;
+
+    private StubModelServer server;
+    private LlmFakeValuesService warmService;
+    private FakerContext warmContext;
+    private Faker warm;
+    private Faker cold;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new StubModelServer(latencyMillis);
+
+        // Values are drawn with replacement, so after the first call every call is a cache hit
+        warmService = backend.create(server).service();
+        warmService.setReuseValues(true);
+        warmService.setPoolStorage(switch (storage) {
+            case "HEAP_ARENA" -> () -> PoolStorage.arena(false);
+            case "DIRECT_ARENA" -> () -> PoolStorage.arena(true);
+            default -> PoolStorage::list;
+        });
+        warmContext = context();
+        warm = new Faker(warmService, warmContext);
+        warm.name().firstName();
+
+        // Every completion contains a single value, which is handed out once, so every call is a cache miss
+        LlmFakeValuesService coldService = backend.create(server).service();
+        coldService.setAmountOfItemsToGenerate(1);
+        cold = new Faker(coldService, context());
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public String warm() {
+        return warm.name().firstName();
+    }
+
+    /**
+     * Draws straight from the service, leaving out the work Faker does before it calls the service. Run with
+     * {@code -prof gc} to check the cache hit doesn't allocate.
+     */
+    @Benchmark
+    public String warmHit() {
+        return warmService.resolve("name.first_name", null, warmContext);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String warmContended() {
+        return warm.name().firstName();
+    }
+
+    @Benchmark
+    public String cold() {
+        return cold.name().firstName();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String coldContended() {
+        return cold.name().firstName();
+    }
+
+    private static FakerContext context() {
+        // A random service with its own random per faker, as datafaker caches providers per (equal) context
+        return new FakerContext(Locale.ENGLISH, new RandomService(new Random()));
+    }
+}
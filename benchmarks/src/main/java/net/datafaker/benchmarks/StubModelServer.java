@@ -0,0 +1,151 @@
+package net.datafaker.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An in-process http server which stands in for both the OpenAI completions API and the Ollama generate API,
+ * so benchmarks measure the client side instead of the model.
+ * <p>
+ * Every completion contains as many unique values as the prompt asks for, the amount being the first number in
+ * the prompt. An optional latency simulates the time the model needs.
+ */
+public class StubModelServer implements AutoCloseable {
+
+    private static final Pattern AMOUNT = Pattern.compile("\\d+");
+
+    static {
+        // Without this, small responses wait for a delayed ack, adding ~40ms to every completion
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final Gson gson = new Gson();
+    private final AtomicLong counter = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+
+    private final long latencyMillis;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "stub-model-server");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param latencyMillis How long every completion takes.
+     */
+    public StubModelServer(long latencyMillis) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v1/completions", exchange -> respond(exchange, openAIResponse(exchange)));
+        server.createContext("/api/generate", exchange -> respond(exchange, ollamaResponse(exchange)));
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return The url to pass to {@code OpenAIFakeValuesService.setEndpoint}.
+     */
+    public URI openAIEndpoint() {
+        return URI.create(baseUrl() + "v1/completions");
+    }
+
+    /**
+     * @return The host to pass to an {@code OllamaClient}.
+     */
+    public String ollamaHost() {
+        return baseUrl();
+    }
+
+    /**
+     * @return The amount of completions answered so far.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    private String baseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/";
+    }
+
+    private String openAIResponse(HttpExchange exchange) throws IOException {
+        JsonObject text = new JsonObject();
+        text.add("values", values(prompt(exchange)));
+
+        JsonObject choice = new JsonObject();
+        choice.addProperty("text", gson.toJson(text));
+        choice.addProperty("index", 0);
+        choice.addProperty("finish_reason", "stop");
+
+        JsonArray choices = new JsonArray();
+        choices.add(choice);
+
+        JsonObject response = new JsonObject();
+        response.add("choices", choices);
+        return gson.toJson(response);
+    }
+
+    private String ollamaResponse(HttpExchange exchange) throws IOException {
+        JsonObject response = new JsonObject();
+        response.addProperty("response", gson.toJson(values(prompt(exchange))));
+        response.addProperty("done", true);
+        return gson.toJson(response);
+    }
+
+    private String prompt(HttpExchange exchange) throws IOException {
+        try (var reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, JsonObject.class).get("prompt").getAsString();
+        }
+    }
+
+    private JsonArray values(String prompt) {
+        Matcher matcher = AMOUNT.matcher(prompt);
+        int amount = matcher.find() ? Integer.parseInt(matcher.group()) : 1;
+
+        JsonArray values = new JsonArray();
+        for (int i = 0; i < amount; i++) {
+            values.add("value-" + counter.incrementAndGet());
+        }
+        return values;
+    }
+
+    private void respond(HttpExchange exchange, String body) throws IOException {
+        requests.incrementAndGet();
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,101 @@
+package net.datafaker.benchmarks;
+
+import net.datafaker.service.FakerContext;
+import net.datafaker.service.RandomService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Measures the work a service does around a completion: turning a key into a prompt, and parsing the values out
+ * of the text the model returned.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextBenchmark {
+
+    @Param({"OPENAI", "OLLAMA"})
+    public Backend backend;
+
+    @Param({"Name.first_name", "Address.streetAddress"})
+    public String key;
+
+    /**
+     * The amount of values in the parsed completion.
+     */
+    @Param({"20"})
+    public int amount;
+
+    private final FakerContext context = new FakerContext(Locale.ENGLISH, new RandomService());
+
+    private StubModelServer server;
+    private Backend.ExposedService service;
+    private String completion;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new StubModelServer(0);
+        service = backend.create(server);
+
+        String values = IntStream.range(0, amount)
+                .mapToObj(i -> "\"Value number " + i + "\"")
+                .collect(Collectors.joining(", ", "[", "]"));
+        completion = switch (backend) {
+            case OPENAI -> "\n\n{\"values\": " + values + "}";
+            case OLLAMA -> "```json\n" + values + "\n```";
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public String formatKey() {
+        return service.formatKey(key);
+    }
+
+    @Benchmark
+    public String createPrompt() {
+        return service.createPrompt(key, amount, context);
+    }
+
+    @Benchmark
+    public List<String> parseValues() {
+        return service.parseValues(completion);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String createPromptContended() {
+        return service.createPrompt(key, amount, context);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public List<String> parseValuesContended() {
+        return service.parseValues(completion);
+    }
+}
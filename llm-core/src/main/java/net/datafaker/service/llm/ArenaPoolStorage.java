@@ -0,0 +1,191 @@
+package net.datafaker.service.llm;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Keeps the values of a pool as UTF-8 bytes, one after the other in a single buffer, with the offset and length of
+ * every value in an int array. That's about the size of the text itself, instead of the 40 to 60 bytes of overhead of
+ * every {@code String} in a list, and the garbage collector only sees a few objects, however many values there are.
+ * <p>
+ * Removed values leave a gap in the buffer. Once more than half of the buffer consists of gaps, the remaining values
+ * are moved together within the same buffer. Compacting sorts the values by offset, so it takes O(n log n) for n
+ * values, but it only happens after at least as many bytes were removed as remain, so most removals don't pay for it.
+ * <p>
+ * A buffer holds at most about 2 GiB, like an array.
+ */
+final class ArenaPoolStorage implements PoolStorage {
+
+    private static final int INITIAL_CAPACITY = 4096;
+
+    /**
+     * The largest buffer, and index, which can be allocated, like the largest array.
+     */
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private final int maxCapacity;
+
+    private final boolean direct;
+
+    private ByteBuffer arena;
+
+    /**
+     * The offset in the arena of every value, followed by its length in bytes.
+     */
+    private int[] index = new int[64];
+
+    private int size;
+
+    /**
+     * The end of the last value in the arena.
+     */
+    private int end;
+
+    /**
+     * The amount of bytes in the arena of values which were removed.
+     */
+    private int gaps;
+
+    ArenaPoolStorage(boolean direct) {
+        this(direct, MAX_CAPACITY);
+    }
+
+    /**
+     * @param maxCapacity The maximum size of the buffer in bytes.
+     */
+    ArenaPoolStorage(boolean direct, int maxCapacity) {
+        this.direct = direct;
+        this.maxCapacity = Math.min(maxCapacity, MAX_CAPACITY);
+        this.arena = allocate(Math.min(INITIAL_CAPACITY, this.maxCapacity));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String get(int i) {
+        checkIndex(i);
+        int offset = index[2 * i];
+        int length = index[2 * i + 1];
+        if (arena.hasArray()) {
+            return new String(arena.array(), arena.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        arena.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String remove(int i) {
+        String value = get(i);
+        gaps += index[2 * i + 1];
+        size--;
+        index[2 * i] = index[2 * size];
+        index[2 * i + 1] = index[2 * size + 1];
+
+        if (size == 0) {
+            end = 0;
+            gaps = 0;
+        } else if (gaps > end / 2) {
+            compact();
+        }
+        return value;
+    }
+
+    @Override
+    public void add(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (2L * size + 2 > index.length) {
+            if (2L * size + 2 > MAX_CAPACITY) {
+                throw new IllegalStateException("A pool can't hold more than " + MAX_CAPACITY / 2 + " values");
+            }
+            index = Arrays.copyOf(index, (int) Math.min(2L * index.length, MAX_CAPACITY));
+        }
+        if ((long) end + bytes.length > arena.capacity()) {
+            makeRoom(bytes.length);
+        }
+        arena.put(end, bytes);
+        index[2 * size] = end;
+        index[2 * size + 1] = bytes.length;
+        end += bytes.length;
+        size++;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        end = 0;
+        gaps = 0;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index " + i + " out of bounds for length " + size);
+        }
+    }
+
+    /**
+     * Makes room for another value of the amount of bytes after the last value, by moving the values together if
+     * that frees enough room, or else by moving them to a larger buffer.
+     *
+     * @throws IllegalStateException If the values don't fit in the largest buffer.
+     */
+    private void makeRoom(int bytes) {
+        long required = (long) end - gaps + bytes;
+        if (required > maxCapacity) {
+            throw new IllegalStateException("The values of a pool don't fit in " + maxCapacity + " bytes");
+        }
+        if (required <= arena.capacity()) {
+            compact();
+            return;
+        }
+        long capacity = arena.capacity();
+        while (capacity < required) {
+            capacity *= 2;
+        }
+        ByteBuffer target = allocate((int) Math.min(capacity, maxCapacity));
+        int position = 0;
+        for (int i = 0; i < size; i++) {
+            int offset = index[2 * i];
+            int length = index[2 * i + 1];
+            target.put(position, arena, offset, length);
+            index[2 * i] = position;
+            position += length;
+        }
+        arena = target;
+        end = position;
+        gaps = 0;
+    }
+
+    /**
+     * Moves the values together within the buffer. The values are moved in the order of their offset, so every
+     * value only moves towards the start of the buffer, without overwriting values which weren't moved yet.
+     */
+    private void compact() {
+        long[] order = new long[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = (long) index[2 * i] << 32 | i;
+        }
+        Arrays.sort(order);
+        int position = 0;
+        for (long offsetAndValue : order) {
+            int i = (int) offsetAndValue;
+            int offset = index[2 * i];
+            int length = index[2 * i + 1];
+            if (offset != position) {
+                arena.put(position, arena, offset, length);
+                index[2 * i] = position;
+            }
+            position += length;
+        }
+        end = position;
+        gaps = 0;
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+}
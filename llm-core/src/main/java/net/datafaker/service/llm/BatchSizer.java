@@ -0,0 +1,187 @@
+package net.datafaker.service.llm;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides how many values to ask the model for, per key. It learns how many tokens a value of a key takes from the
+ * usage the model reports, so a batch fills the maximum amount of completion tokens without being cut off.
+ * Within that limit, keys which run out of values quickly get larger batches, and keys which are rarely used get
+ * smaller ones, so fewer round-trips are needed without paying for values which are never used.
+ */
+class BatchSizer {
+
+    /**
+     * The fraction of the maximum amount of tokens to fill, as the length of values varies.
+     */
+    private static final double HEADROOM = 0.85;
+
+    /**
+     * Tokens spent on the json around the values, such as the braces and the field name.
+     */
+    private static final int OVERHEAD_TOKENS = 16;
+
+    /**
+     * A key which needs a new batch within this time after the previous one is hot, and gets a larger batch.
+     */
+    private static final long HOT_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * A key which needs a new batch only after this time is rare, and gets a smaller batch.
+     */
+    private static final long RARE_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final Map<String, KeyState> states = new ConcurrentHashMap<>();
+
+    private final LongSupplier clock;
+
+    BatchSizer() {
+        this(System::nanoTime);
+    }
+
+    /**
+     * @param clock The current time in nanoseconds, such as {@link System#nanoTime()}.
+     */
+    BatchSizer(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Sizes the next batch of a key, which is about to be requested.
+     *
+     * @param initial   The size of the first batch of a key.
+     * @param max       The maximum size of a batch.
+     * @param maxTokens The maximum amount of completion tokens, or 0 if the model has no limit.
+     */
+    int next(String key, int initial, int max, int maxTokens) {
+        return state(key).next(clock.getAsLong(), initial, capacity(List.of(key), max, maxTokens, max), true);
+    }
+
+    /**
+     * Sizes the next batch of multiple keys which are requested at once, sharing the tokens. When some of the keys are
+     * hot, the batch is requested for them, so the other keys neither grow nor count as hot because of it.
+     */
+    int next(List<String> keys, int initial, int max, int maxTokens) {
+        int capacity = capacity(keys, max, maxTokens, max);
+        long now = clock.getAsLong();
+        boolean anyHot = false;
+        for (String key : keys) {
+            anyHot |= state(key).isHot(now);
+        }
+        int amount = capacity;
+        for (String key : keys) {
+            KeyState state = state(key);
+            amount = Math.min(amount, state.next(now, initial, capacity, !anyHot || state.isHot(now)));
+        }
+        return amount;
+    }
+
+    /**
+     * @param unknown The capacity when it's not known yet how many tokens the values take.
+     * @return The largest batch of values of the keys which fits in the maximum amount of tokens.
+     */
+    int capacity(List<String> keys, int max, int maxTokens, int unknown) {
+        if (maxTokens <= 0) {
+            return max;
+        }
+        double tokensPerValue = 0;
+        for (String key : keys) {
+            KeyState state = states.get(key);
+            if (state == null || state.tokensPerValue == 0) {
+                return unknown;
+            }
+            tokensPerValue += state.tokensPerValue;
+        }
+        int fits = (int) ((maxTokens * HEADROOM - OVERHEAD_TOKENS * keys.size()) / tokensPerValue);
+        return Math.max(1, Math.min(max, fits));
+    }
+
+    /**
+     * Learns from the tokens the model used to generate a batch, which wasn't cut off.
+     */
+    void learn(List<String> keys, int amount, int completionTokens) {
+        if (amount <= 0 || keys.isEmpty()) {
+            return;
+        }
+        double observed = (double) Math.max(0, completionTokens - OVERHEAD_TOKENS * keys.size()) / keys.size() / amount;
+        for (String key : keys) {
+            state(key).learn(observed);
+        }
+    }
+
+    /**
+     * The model ran out of tokens before it was done with a batch, so the values of the keys take more tokens than
+     * expected.
+     */
+    void truncated(List<String> keys, int amount, int maxTokens) {
+        for (String key : keys) {
+            state(key).truncated(amount, maxTokens / (double) keys.size());
+        }
+    }
+
+    private KeyState state(String key) {
+        KeyState state = states.get(key);
+        return state != null ? state : states.computeIfAbsent(key, k -> new KeyState());
+    }
+
+    private static final class KeyState {
+
+        /**
+         * The size of the next batch, 0 until the first batch.
+         */
+        private int target;
+        private long lastBatchNanos;
+
+        /**
+         * The largest batch which wasn't cut off, as far as known. Batches never grow past it, not even for models
+         * which don't report their maximum amount of tokens.
+         */
+        private int ceiling = Integer.MAX_VALUE;
+
+        /**
+         * A moving average of the completion tokens per value, 0 until the model reported its usage.
+         */
+        private volatile double tokensPerValue;
+
+        synchronized boolean isHot(long now) {
+            return lastBatchNanos != 0 && now - lastBatchNanos < HOT_NANOS;
+        }
+
+        /**
+         * @param demanded Whether the key itself needs the batch, rather than being requested along with hot keys.
+         */
+        synchronized int next(long now, int initial, int capacity, boolean demanded) {
+            if (target == 0) {
+                target = initial;
+            } else if (demanded && lastBatchNanos != 0) {
+                long elapsed = now - lastBatchNanos;
+                if (elapsed < HOT_NANOS) {
+                    target = Math.min(capacity, target * 2);
+                } else if (elapsed > RARE_NANOS) {
+                    target = Math.max(1, target / 2);
+                }
+            }
+            if (demanded || lastBatchNanos == 0) {
+                lastBatchNanos = now;
+            }
+            target = Math.max(1, Math.min(Math.min(capacity, ceiling), target));
+            return target;
+        }
+
+        synchronized void learn(double observed) {
+            tokensPerValue = tokensPerValue == 0 ? observed : 0.7 * tokensPerValue + 0.3 * observed;
+        }
+
+        synchronized void truncated(int amount, double maxTokens) {
+            // The values didn't fit, so a value takes at least this amount of tokens
+            if (maxTokens > 0) {
+                tokensPerValue = Math.max(tokensPerValue, maxTokens / amount * 1.1);
+            }
+            target = Math.max(1, amount / 2);
+            ceiling = Math.max(1, Math.min(ceiling, (int) (amount * HEADROOM)));
+        }
+    }
+}
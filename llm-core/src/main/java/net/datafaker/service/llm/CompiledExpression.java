@@ -0,0 +1,125 @@
+package net.datafaker.service.llm;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * An expression such as "#{Name.first_name} #{Name.last_name}", parsed into its literal text and its placeholders.
+ * <p>
+ * Placeholders which refer to a key are resolved from the values generated by the model. Anything else, such as
+ * placeholders with arguments ("#{number.number_between '1','10'}"), is left to Datafaker.
+ */
+final class CompiledExpression {
+
+    private static final String START = "#{";
+
+    /**
+     * @param text The placeholder as it appears in the expression, including "#{" and "}".
+     * @param key  The key the placeholder refers to, such as "name.first_name", or null if Datafaker resolves it.
+     */
+    record Placeholder(String text, String key) {
+    }
+
+    /**
+     * The literal text before every placeholder, and after the last one.
+     */
+    private final String[] literals;
+
+    private final Placeholder[] placeholders;
+
+    private final List<String> keys;
+
+    private CompiledExpression(List<String> literals, List<Placeholder> placeholders) {
+        this.literals = literals.toArray(String[]::new);
+        this.placeholders = placeholders.toArray(Placeholder[]::new);
+
+        Set<String> keys = new LinkedHashSet<>();
+        for (Placeholder placeholder : placeholders) {
+            if (placeholder.key() != null) {
+                keys.add(placeholder.key());
+            }
+        }
+        this.keys = List.copyOf(keys);
+    }
+
+    /**
+     * @param expression The expression to parse.
+     * @param keyOf      Maps the content of a placeholder, such as "Name.first_name", to the key it refers to,
+     *                   or to null if the placeholder isn't a reference to a key.
+     */
+    static CompiledExpression compile(String expression, Function<String, String> keyOf) {
+        List<String> literals = new ArrayList<>();
+        List<Placeholder> placeholders = new ArrayList<>();
+
+        int from = 0;
+        int start;
+        while ((start = expression.indexOf(START, from)) >= 0) {
+            int end = findEnd(expression, start + START.length());
+            if (end < 0) {
+                break;
+            }
+            String content = expression.substring(start + START.length(), end);
+            literals.add(expression.substring(from, start));
+            placeholders.add(new Placeholder(expression.substring(start, end + 1), isReference(content) ? keyOf.apply(content) : null));
+            from = end + 1;
+        }
+        literals.add(expression.substring(from));
+        return new CompiledExpression(literals, placeholders);
+    }
+
+    /**
+     * @return The index of the brace which closes the placeholder starting at the index, or -1 if it isn't closed.
+     */
+    private static int findEnd(String expression, int from) {
+        int depth = 0;
+        for (int i = from; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                if (depth == 0) {
+                    return i;
+                }
+                depth--;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Whether the content of a placeholder is a plain (optionally provider qualified) name without arguments.
+     */
+    private static boolean isReference(String content) {
+        if (content.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    Placeholder[] placeholders() {
+        return placeholders;
+    }
+
+    /**
+     * @return The literal text before the placeholder with the index, or after the last placeholder.
+     */
+    String literal(int index) {
+        return literals[index];
+    }
+
+    /**
+     * @return The distinct keys the placeholders refer to.
+     */
+    List<String> keys() {
+        return keys;
+    }
+}
@@ -0,0 +1,151 @@
+package net.datafaker.service.llm;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Stores values in a directory, using one append-only file per {@link StoreKey}.
+ * <p>
+ * Every batch is written as its size, followed by its values, each as its length in bytes followed by its UTF-8
+ * bytes, so values of any length can be stored. A batch is written in a single append. A batch which was cut
+ * short (for example because the JVM was killed halfway) is skipped when loading, and cut off before the first append,
+ * so the batches appended after it can be loaded.
+ * <p>
+ * Files of the earlier format, in which values were limited to 64 KB, have another extension and are ignored.
+ */
+public class FileValueStore implements ValueStore {
+
+    private static final String EXTENSION = ".utf8values";
+
+    private final Path directory;
+
+    /**
+     * The keys whose files were checked for a batch which was cut short, before appending to them for the first time.
+     */
+    private final Set<StoreKey> checked = new HashSet<>();
+
+    public FileValueStore(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public List<String> load(StoreKey key) throws IOException {
+        List<String> values = new ArrayList<>();
+        try {
+            read(file(key), values);
+        } catch (NoSuchFileException e) {
+            return List.of();
+        }
+        return values;
+    }
+
+    @Override
+    public synchronized void append(StoreKey key, List<String> values) throws IOException {
+        if (values.isEmpty()) {
+            return;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(values.size());
+        for (String value : values) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            data.writeInt(utf8.length);
+            data.write(utf8);
+        }
+        data.flush();
+
+        Files.createDirectories(directory);
+        if (checked.add(key)) {
+            truncateIncompleteBatch(file(key));
+        }
+        try (OutputStream out = Files.newOutputStream(file(key), StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            bytes.writeTo(out);
+        }
+    }
+
+    /**
+     * Cuts off a batch which was cut short, so the batches appended after it can be loaded.
+     */
+    private static void truncateIncompleteBatch(Path file) throws IOException {
+        long complete;
+        try {
+            complete = read(file, null);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            if (channel.size() > complete) {
+                channel.truncate(complete);
+            }
+        }
+    }
+
+    /**
+     * Reads the complete batches of a file.
+     *
+     * @param values The list to add the values to, or {@code null} to only find the end of the complete batches.
+     * @return The length in bytes of the complete batches.
+     */
+    private static long read(Path file, List<String> values) throws IOException {
+        long size = Files.size(file);
+        long position = 0;
+        long complete = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+            batches:
+            while (size - position >= Integer.BYTES) {
+                int count = data.readInt();
+                position += Integer.BYTES;
+                if (count < 0) {
+                    break;
+                }
+
+                List<String> batch = new ArrayList<>(Math.min(count, 1024));
+                for (int i = 0; i < count; i++) {
+                    if (size - position < Integer.BYTES) {
+                        break batches;
+                    }
+                    int length = data.readInt();
+                    position += Integer.BYTES;
+                    // A length beyond the end of the file means the batch was cut short.
+                    if (length < 0 || length > size - position) {
+                        break batches;
+                    }
+                    if (values == null) {
+                        data.skipNBytes(length);
+                    } else {
+                        byte[] value = new byte[length];
+                        data.readFully(value);
+                        batch.add(new String(value, StandardCharsets.UTF_8));
+                    }
+                    position += length;
+                }
+                complete = position;
+                if (values != null) {
+                    values.addAll(batch);
+                }
+            }
+        }
+        return complete;
+    }
+
+    private Path file(StoreKey key) {
+        return directory.resolve(key.digest() + EXTENSION);
+    }
+}
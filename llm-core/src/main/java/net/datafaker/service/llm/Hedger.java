@@ -0,0 +1,195 @@
+package net.datafaker.service.llm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Sends a duplicate of a request to another service when the request takes longer than the {@link HedgingPolicy}
+ * allows, and completes with the first answer.
+ */
+final class Hedger {
+
+    /**
+     * The amount of latencies the delay is based on.
+     */
+    private static final int SAMPLES = 256;
+
+    /**
+     * The amount of latencies which need to be known before requests are hedged.
+     */
+    private static final int MIN_SAMPLES = 20;
+
+    private final HedgingPolicy policy;
+
+    /**
+     * Sends the prompt to the other service.
+     */
+    private final Function<String, CompletableFuture<String>> hedge;
+
+    /**
+     * The latencies of the last requests, including the ones which failed or were cancelled, as a ring buffer.
+     */
+    private final long[] latencies = new long[SAMPLES];
+    private int count;
+    private int next;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedged = new AtomicLong();
+
+    Hedger(HedgingPolicy policy, Function<String, CompletableFuture<String>> hedge) {
+        this.policy = policy;
+        this.hedge = hedge;
+    }
+
+    /**
+     * @param request Sends the prompt to the model of the service itself.
+     * @param report  Receives whether the hedged request answered first, once a hedged request is done.
+     * @return A future which completes with the first answer, or fails once all requests failed.
+     */
+    CompletableFuture<String> complete(String prompt, Function<String, CompletableFuture<String>> request, Consumer<Boolean> report) {
+        requests.incrementAndGet();
+        long delay = delayNanos();
+        long start = System.nanoTime();
+        CompletableFuture<String> first = send(request, prompt);
+        // Failed and cancelled requests count as well, otherwise the delay would only learn from the fast requests.
+        // A request which lost the race is cancelled once the race is decided, so it took at least that long.
+        first.whenComplete((text, failure) -> record(System.nanoTime() - start));
+        if (delay < 0) {
+            return first;
+        }
+
+        Race race = new Race(report);
+        race.add(first);
+        CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(() -> {
+            if (!race.result.isDone() && tryHedge()) {
+                race.add(send(hedge, prompt));
+            }
+        });
+        return race.result;
+    }
+
+    private static CompletableFuture<String> send(Function<String, CompletableFuture<String>> request, String prompt) {
+        try {
+            return request.apply(prompt);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * @return How long to wait before hedging, or -1 if not enough latencies are known yet.
+     */
+    synchronized long delayNanos() {
+        if (count < MIN_SAMPLES) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        int index = Math.min(count - 1, Math.max(0, (int) Math.ceil(policy.getPercentile() * count) - 1));
+        return Math.max(policy.getMinDelayNanos(), sorted[index]);
+    }
+
+    synchronized void record(long latencyNanos) {
+        latencies[next] = latencyNanos;
+        next = (next + 1) % SAMPLES;
+        count = Math.min(count + 1, SAMPLES);
+    }
+
+    /**
+     * @return Whether another hedged request fits in the extra load the policy allows.
+     */
+    private boolean tryHedge() {
+        while (true) {
+            long current = hedged.get();
+            if (current + 1 > policy.getMaxExtraLoad() * requests.get()) {
+                return false;
+            }
+            if (hedged.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * The requests for the same prompt, of which the first answer wins.
+     */
+    private static final class Race {
+
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+
+        private final List<CompletableFuture<String>> attempts = new ArrayList<>(2);
+
+        private final Consumer<Boolean> report;
+
+        private int pending;
+
+        private boolean decided;
+
+        private Race(Consumer<Boolean> report) {
+            this.report = report;
+            // Whoever gave up on the result, doesn't need the requests anymore either
+            result.whenComplete((text, failure) -> {
+                if (result.isCancelled()) {
+                    cancelAll();
+                }
+            });
+        }
+
+        void add(CompletableFuture<String> attempt) {
+            boolean racing;
+            synchronized (this) {
+                racing = !decided && !result.isDone();
+                if (racing) {
+                    attempts.add(attempt);
+                    pending++;
+                }
+            }
+            if (racing) {
+                attempt.whenComplete((text, failure) -> finish(attempt, text, failure));
+            } else {
+                attempt.cancel(true);
+            }
+        }
+
+        private void finish(CompletableFuture<String> attempt, String text, Throwable failure) {
+            boolean hedged;
+            boolean hedgeWon;
+            synchronized (this) {
+                pending--;
+                // When one request failed, the other one might still answer
+                if (decided || (failure != null && pending > 0)) {
+                    return;
+                }
+                decided = true;
+                hedged = attempts.size() > 1;
+                hedgeWon = hedged && failure == null && attempt == attempts.get(1);
+            }
+            if (hedged) {
+                report.accept(hedgeWon);
+            }
+            // The loser is cancelled before the result completes, so it stops as soon as possible
+            cancelAll();
+            if (failure == null) {
+                result.complete(text);
+            } else {
+                result.completeExceptionally(failure);
+            }
+        }
+
+        private void cancelAll() {
+            List<CompletableFuture<String>> losers;
+            synchronized (this) {
+                losers = List.copyOf(attempts);
+            }
+            for (CompletableFuture<String> loser : losers) {
+                loser.cancel(true);
+            }
+        }
+    }
+}
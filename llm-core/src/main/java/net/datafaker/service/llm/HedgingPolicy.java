@@ -0,0 +1,50 @@
+package net.datafaker.service.llm;
+
+import java.time.Duration;
+
+/**
+ * Decides when a request which is taking long gets a duplicate, sent to another endpoint or a cheaper model. The
+ * first answer is used, and the other request is cancelled.
+ * <p>
+ * A request is hedged once it takes longer than most earlier requests, based on the latencies of the last few hundred
+ * requests. Until enough latencies are known, requests aren't hedged.
+ */
+public final class HedgingPolicy {
+
+    /**
+     * Hedges requests which take longer than 95% of the requests, and adds at most 5% of extra requests.
+     */
+    public static final HedgingPolicy DEFAULT = new HedgingPolicy(0.95, Duration.ofMillis(100), 0.05);
+
+    private final double percentile;
+    private final long minDelayNanos;
+    private final double maxExtraLoad;
+
+    /**
+     * @param percentile   The percentile of the latencies of earlier requests after which a request is hedged, such
+     *                     as 0.95 to hedge requests which take longer than 95% of the requests.
+     * @param minDelay     The minimum time to wait for an answer before hedging.
+     * @param maxExtraLoad The maximum amount of hedged requests, as a fraction of all requests, such as 0.05 to send
+     *                     at most 5% more requests.
+     */
+    public HedgingPolicy(double percentile, Duration minDelay, double maxExtraLoad) {
+        if (percentile <= 0 || percentile > 1) {
+            throw new IllegalArgumentException("The percentile should be between 0 and 1, but was " + percentile);
+        }
+        this.percentile = percentile;
+        this.minDelayNanos = minDelay.toNanos();
+        this.maxExtraLoad = maxExtraLoad;
+    }
+
+    double getPercentile() {
+        return percentile;
+    }
+
+    long getMinDelayNanos() {
+        return minDelayNanos;
+    }
+
+    double getMaxExtraLoad() {
+        return maxExtraLoad;
+    }
+}
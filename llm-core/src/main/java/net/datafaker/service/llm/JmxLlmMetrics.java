@@ -0,0 +1,203 @@
+package net.datafaker.service.llm;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the measurements per model and per key, and exposes them as MXBeans, so they can be watched using any
+ * JMX client, such as JConsole or VisualVM. The statistics are registered as {@value #DOMAIN}:type=Model,name=...
+ * and {@value #DOMAIN}:type=Key,model=...,name=...
+ * <p>
+ * Tokens of a request for multiple keys are divided evenly over those keys.
+ */
+public class JmxLlmMetrics implements LlmMetrics {
+
+    public static final String DOMAIN = "net.datafaker.llm";
+
+    private static final JmxLlmMetrics DEFAULT = new JmxLlmMetrics(ManagementFactory.getPlatformMBeanServer());
+
+    private final MBeanServer server;
+
+    private final Map<String, Model> models = new ConcurrentHashMap<>();
+
+    /**
+     * @param server The server to register the statistics with, or null to only keep them in memory.
+     */
+    public JmxLlmMetrics(MBeanServer server) {
+        this.server = server;
+    }
+
+    /**
+     * @return The metrics all services use by default, registered with the platform MBean server.
+     */
+    public static JmxLlmMetrics getDefault() {
+        return DEFAULT;
+    }
+
+    @Override
+    public void hit(String model, String key) {
+        Model stats = model(model);
+        stats.stats.hits.increment();
+        stats.key(key).stats.hits.increment();
+    }
+
+    @Override
+    public void miss(String model, String key) {
+        Model stats = model(model);
+        stats.stats.misses.increment();
+        stats.key(key).stats.misses.increment();
+    }
+
+    @Override
+    public void fallback(String model, String key) {
+        Model stats = model(model);
+        stats.stats.fallbacks.increment();
+        stats.key(key).stats.fallbacks.increment();
+    }
+
+    @Override
+    public void filtered(String model, String key, int generated, int duplicates, int invalid) {
+        Model stats = model(model);
+        stats.stats.filtered(generated, duplicates, invalid);
+        stats.key(key).stats.filtered(generated, duplicates, invalid);
+    }
+
+    @Override
+    public void poolDepth(String model, Locale locale, String key, int depth) {
+        model(model).key(key).depth(locale).set(depth);
+    }
+
+    @Override
+    public void request(String model, List<String> keys, long latencyNanos, boolean failed) {
+        Model stats = model(model);
+        stats.stats.request(latencyNanos, failed);
+        for (String key : keys) {
+            stats.key(key).stats.request(latencyNanos, failed);
+        }
+    }
+
+    @Override
+    public void tokens(String model, List<String> keys, int promptTokens, int completionTokens) {
+        Model stats = model(model);
+        stats.stats.promptTokens.add(promptTokens);
+        stats.stats.completionTokens.add(completionTokens);
+        for (int i = 0; i < keys.size(); i++) {
+            Key key = stats.key(keys.get(i));
+            // The first key gets the remainder, so the keys add up to the model
+            key.stats.promptTokens.add(promptTokens / keys.size() + (i == 0 ? promptTokens % keys.size() : 0));
+            key.stats.completionTokens.add(completionTokens / keys.size() + (i == 0 ? completionTokens % keys.size() : 0));
+        }
+    }
+
+    @Override
+    public void hedged(String model, List<String> keys, boolean won) {
+        Model stats = model(model);
+        stats.stats.hedged(won);
+        for (String key : keys) {
+            stats.key(key).stats.hedged(won);
+        }
+    }
+
+    @Override
+    public void truncation(String model, List<String> keys) {
+        Model stats = model(model);
+        stats.stats.truncations.increment();
+        for (String key : keys) {
+            stats.key(key).stats.truncations.increment();
+        }
+    }
+
+    @Override
+    public void parseFailure(String model, List<String> keys) {
+        Model stats = model(model);
+        stats.stats.parseFailures.increment();
+        for (String key : keys) {
+            stats.key(key).stats.parseFailures.increment();
+        }
+    }
+
+    /**
+     * @return The statistics of the model, or null if nothing was measured for it yet.
+     */
+    public LlmStatsMXBean getModelStats(String model) {
+        Model stats = models.get(model);
+        return stats == null ? null : stats.stats;
+    }
+
+    /**
+     * @return The statistics of the key, or null if nothing was measured for it yet.
+     */
+    public LlmStatsMXBean getKeyStats(String model, String key) {
+        Model stats = models.get(model);
+        Key keyStats = stats == null ? null : stats.keys.get(key);
+        return keyStats == null ? null : keyStats.stats;
+    }
+
+    private Model model(String model) {
+        // Look up first, so a known model doesn't allocate the lambda
+        Model stats = models.get(model);
+        return stats != null ? stats : models.computeIfAbsent(model, m -> {
+            Model created = new Model(m);
+            register(created.stats, "type=Model,name=" + ObjectName.quote(m));
+            return created;
+        });
+    }
+
+    private void register(LlmStats stats, String name) {
+        if (server == null) {
+            return;
+        }
+        try {
+            server.registerMBean(stats, new ObjectName(DOMAIN + ":" + name));
+        } catch (JMException e) {
+            // Metrics are best effort, for example another instance might have registered the name already.
+        }
+    }
+
+    private final class Model {
+        private final String name;
+        private final Map<String, Key> keys = new ConcurrentHashMap<>();
+        private final LlmStats stats = new LlmStats(() -> keys.values().stream().mapToLong(Key::depth).sum());
+
+        private Model(String name) {
+            this.name = name;
+        }
+
+        private Key key(String key) {
+            Key stats = keys.get(key);
+            return stats != null ? stats : keys.computeIfAbsent(key, k -> {
+                Key created = new Key();
+                register(created.stats, "type=Key,model=" + ObjectName.quote(name) + ",name=" + ObjectName.quote(k));
+                return created;
+            });
+        }
+    }
+
+    private static final class Key {
+        /**
+         * The depth of the pool of every locale, the key reports the sum of them.
+         */
+        private final Map<Locale, AtomicInteger> depths = new ConcurrentHashMap<>();
+        private final LlmStats stats = new LlmStats(this::depth);
+
+        private AtomicInteger depth(Locale locale) {
+            AtomicInteger depth = depths.get(locale);
+            return depth != null ? depth : depths.computeIfAbsent(locale, l -> new AtomicInteger());
+        }
+
+        private long depth() {
+            long depth = 0;
+            for (AtomicInteger localeDepth : depths.values()) {
+                depth += localeDepth.get();
+            }
+            return depth;
+        }
+    }
+}
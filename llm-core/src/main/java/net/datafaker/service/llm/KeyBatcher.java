@@ -0,0 +1,138 @@
+package net.datafaker.service.llm;
+
+import net.datafaker.service.FakerContext;
+import net.datafaker.service.llm.RequestScheduler.Priority;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the keys which are requested within a short window, so their values can be generated using a single
+ * request to the model. Keys are only batched together when they are requested for the same locale.
+ */
+class KeyBatcher {
+
+    interface BatchLoader {
+        Map<String, List<String>> load(List<String> keys, FakerContext context, Priority priority) throws Exception;
+    }
+
+    private final BatchLoader loader;
+    private final Executor executor;
+    private final long windowNanos;
+    private final int maxKeys;
+
+    private final Map<Locale, Batch> pending = new HashMap<>();
+
+    private boolean closed;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "datafaker-llm-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param loader      Generates the values of all keys in a batch.
+     * @param executor    The executor the loader is called on.
+     * @param windowNanos How long to wait for other keys to join a batch, after the first key was requested.
+     * @param maxKeys     The maximum amount of keys in a batch, a full batch is sent without waiting for the window.
+     */
+    KeyBatcher(BatchLoader loader, Executor executor, long windowNanos, int maxKeys) {
+        this.loader = loader;
+        this.executor = executor;
+        this.windowNanos = windowNanos;
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * @return A future which completes with the values generated for the key, or null if the model left the key out.
+     */
+    CompletableFuture<List<String>> submit(String key, FakerContext context, Priority priority) {
+        Batch full = null;
+        CompletableFuture<List<String>> future;
+        synchronized (this) {
+            Batch batch = pending.get(context.getLocale());
+            if (batch == null) {
+                Batch created = batch = new Batch(context);
+                pending.put(context.getLocale(), batch);
+                if (!closed) {
+                    scheduler.schedule(() -> send(created), windowNanos, TimeUnit.NANOSECONDS);
+                }
+            }
+            future = batch.futures.computeIfAbsent(key, k -> new CompletableFuture<>());
+            if (priority == Priority.FOREGROUND) {
+                batch.priority = priority;
+            }
+            // Once closed, there's no window to wait for anymore
+            if (closed || batch.futures.size() >= maxKeys) {
+                full = batch;
+            }
+        }
+        if (full != null) {
+            send(full);
+        }
+        return future;
+    }
+
+    /**
+     * Sends the batches which are still waiting for their window right away, and stops the thread which times the
+     * windows. Keys submitted afterwards are sent right away.
+     */
+    void close() {
+        List<Batch> batches;
+        synchronized (this) {
+            closed = true;
+            batches = new ArrayList<>(pending.values());
+        }
+        batches.forEach(this::send);
+        scheduler.shutdownNow();
+    }
+
+    private void send(Batch batch) {
+        synchronized (this) {
+            if (!pending.remove(batch.context.getLocale(), batch)) {
+                // Already sent because it was full
+                return;
+            }
+        }
+
+        try {
+            executor.execute(() -> load(batch));
+        } catch (RejectedExecutionException e) {
+            batch.futures.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    private void load(Batch batch) {
+        try {
+            Map<String, List<String>> values = loader.load(new ArrayList<>(batch.futures.keySet()), batch.context, batch.priority);
+            batch.futures.forEach((key, future) -> future.complete(values.get(key)));
+        } catch (Throwable t) {
+            batch.futures.values().forEach(future -> future.completeExceptionally(t));
+        }
+    }
+
+    private static final class Batch {
+        private final FakerContext context;
+        private final Map<String, CompletableFuture<List<String>>> futures = new LinkedHashMap<>();
+
+        /**
+         * Foreground as soon as a single caller waits for the batch.
+         */
+        private volatile Priority priority = Priority.BACKGROUND;
+
+        private Batch(FakerContext context) {
+            this.context = context;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package net.datafaker.service.llm;
+
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * Passes every line of a streamed response body to a consumer, for use with
+ * {@link java.net.http.HttpResponse.BodyHandlers#fromLineSubscriber(Flow.Subscriber)}.
+ */
+public class LineSubscriber implements Flow.Subscriber<String> {
+
+    private final Consumer<String> lines;
+
+    private volatile Flow.Subscription subscription;
+
+    private volatile boolean cancelled;
+
+    public LineSubscriber(Consumer<String> lines) {
+        this.lines = lines;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        if (cancelled) {
+            subscription.cancel();
+        } else {
+            subscription.request(Long.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public void onNext(String line) {
+        if (!cancelled) {
+            lines.accept(line);
+        }
+    }
+
+    /**
+     * Stops receiving lines, which makes the http client close the connection, so the model stops generating.
+     */
+    public void cancel() {
+        cancelled = true;
+        Flow.Subscription current = subscription;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        // The future returned by the http client completes exceptionally
+    }
+
+    @Override
+    public void onComplete() {
+    }
+}
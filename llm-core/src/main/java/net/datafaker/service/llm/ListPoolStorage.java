@@ -0,0 +1,42 @@
+package net.datafaker.service.llm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the values of a pool as strings in a list.
+ */
+final class ListPoolStorage implements PoolStorage {
+
+    private final List<String> values = new ArrayList<>();
+
+    @Override
+    public int size() {
+        return values.size();
+    }
+
+    @Override
+    public String get(int index) {
+        return values.get(index);
+    }
+
+    @Override
+    public String remove(int index) {
+        String value = values.get(index);
+        String last = values.remove(values.size() - 1);
+        if (index < values.size()) {
+            values.set(index, last);
+        }
+        return value;
+    }
+
+    @Override
+    public void add(String value) {
+        values.add(value);
+    }
+
+    @Override
+    public void clear() {
+        values.clear();
+    }
+}
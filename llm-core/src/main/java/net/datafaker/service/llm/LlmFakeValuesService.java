@@ -0,0 +1,1810 @@
+package net.datafaker.service.llm;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import net.datafaker.providers.base.AbstractProvider;
+import net.datafaker.providers.base.ProviderRegistration;
+import net.datafaker.service.FakeValuesService;
+import net.datafaker.service.FakerContext;
+import net.datafaker.service.llm.RequestScheduler.Priority;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Base class for the services which generate their values using a large language model.
+ * <p>
+ * Values are generated in batches and cached per key, so the model only needs to be called once in a while.
+ * The cache is thread-safe, so a single instance can be shared by multiple threads.
+ * Implementations only need to know how to ask their model for a batch of values.
+ */
+public abstract class LlmFakeValuesService extends FakeValuesService implements AutoCloseable {
+
+    private final ValuePool pool = new ValuePool();
+
+    /**
+     * The generated records per locale, and per set of keys within a locale.
+     */
+    private final Map<Locale, Map<List<String>, RecordPool>> recordPools = new ConcurrentHashMap<>();
+
+    private final Set<StoreKey> restored = ConcurrentHashMap.newKeySet();
+
+    private final ValueCleaner cleaner = new ValueCleaner();
+
+    /**
+     * The filters which replace the default filter for a key.
+     */
+    private final Map<String, ValueFilter> valueFilters = new ConcurrentHashMap<>();
+
+    private volatile ValueFilter valueFilter = ValueFilter.DEFAULT;
+
+    private final Gson gson = new Gson();
+
+    /**
+     * The compiled prompts per key, locale and whether the full key is used.
+     */
+    private final Map<PromptKey, PromptTemplate.Prompt> prompts = new ConcurrentHashMap<>();
+
+    /**
+     * The English names of the locales, which the prompts for multiple locales list.
+     */
+    private final Map<Locale, String> localeNames = new ConcurrentHashMap<>();
+
+    /**
+     * The templates which replace the default template for the keys of a provider, by lower case provider name.
+     */
+    private final Map<String, PromptTemplate> providerPromptTemplates = new ConcurrentHashMap<>();
+
+    /**
+     * The parsed expressions per expression, class of the provider which resolves them and locale.
+     */
+    private final Map<ExpressionKey, CompiledExpression> expressions = new ConcurrentHashMap<>();
+
+    private volatile PromptTemplate promptTemplate;
+
+    private ExecutorService refillExecutor;
+
+    /**
+     * Whether the refill executor was created by the service, so the service shuts it down when it's closed.
+     */
+    private boolean ownsRefillExecutor;
+
+    /**
+     * The executor pools are filled on during a warm-up, or null to use the refill executor.
+     */
+    private volatile Executor warmUpExecutor;
+
+    private KeyBatcher batcher;
+
+    private volatile ValueStore valueStore;
+
+    private volatile LlmMetrics metrics = JmxLlmMetrics.getDefault();
+
+    private volatile RequestScheduler requestScheduler;
+
+    private volatile Hedger hedger;
+
+    /**
+     * The services which hedged the prompts this service is sending, see {@link #setHedging(HedgingPolicy, LlmFakeValuesService)}.
+     */
+    private final Map<String, LlmFakeValuesService> hedgedFor = new ConcurrentHashMap<>();
+
+    private final BatchSizer batchSizer = new BatchSizer();
+
+    /**
+     * The keys and amount of values of the prompts which are waiting for the model, so the tokens reported for a
+     * prompt can be attributed to its keys.
+     */
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Keys are either the faker name + property (full:true), such as person + name, or only the property (full:false), such as "name".
+     * <p>
+     * Depending on your use case, one might provide better results than the other.
+     */
+    private boolean useFullKey = false;
+
+    /**
+     * Controls the amount of items to generate. These items are cached, so to speed up the process, set this to high amount,
+     * but the higher the amount, the higher the costs (don't forget to set the maxTokens to an appropriate amount too).
+     */
+    private int amountOfItemsToGenerate;
+
+    /**
+     * Whether to size every batch based on how fast the values of a key are used, and how many tokens its values
+     * take, instead of always asking for {@link #amountOfItemsToGenerate} values.
+     */
+    private boolean adaptiveBatchSize = false;
+
+    /**
+     * The maximum amount of values to ask for in a batch, when batches are sized adaptively.
+     */
+    private int maxAmountOfItemsToGenerate = 100;
+
+    /**
+     * When the amount of cached items for a key drops below this threshold, the next batch is generated in the background,
+     * while callers keep drawing from the items which are left. The default of 0 disables this, which means the model
+     * is only called once the cache for a key is empty.
+     */
+    private int refillThreshold = 0;
+
+    /**
+     * By default, every value is handed out only once, and the model is called again once all values have been used.
+     * When reusing values, values are drawn with replacement, so a modest amount of generated values can back any
+     * amount of generated data. Use the refresh settings to still add some fresh values every now and then.
+     */
+    private boolean reuseValues = false;
+
+    /**
+     * When reusing values, a fresh batch is added in the background after this amount of draws. 0 means never.
+     */
+    private int refreshAfterDraws = 0;
+
+    /**
+     * When reusing values, a fresh batch is added in the background once the last batch is this old. 0 means never.
+     */
+    private long refreshAfterNanos = 0;
+
+    /**
+     * By default, resolving a key returns null when the model fails, like Datafaker does for unknown keys. When
+     * failing on errors, an exception is thrown instead, so failures don't silently end up in the generated data.
+     */
+    private boolean failOnError = false;
+
+    /**
+     * Whether to drop the values which were generated for a key before, so the cache doesn't fill up with duplicates.
+     */
+    private boolean deduplicate = true;
+
+    /**
+     * How long a miss waits for the model, before the value is resolved from the values built into Datafaker instead.
+     * 0 (default) always waits for the model.
+     */
+    private long latencyBudgetNanos = 0;
+
+    /**
+     * When a load of a key failed, misses of the key don't call the model again for this long, but use the values built
+     * into Datafaker right away. Only used with a latency budget.
+     */
+    private long failureBackoffNanos = TimeUnit.SECONDS.toNanos(5);
+
+    /**
+     * Set while a thread resolves a key from the values built into Datafaker.
+     */
+    private final ThreadLocal<Boolean> fallingBack = new ThreadLocal<>();
+
+    /**
+     * The maximum amount of requests {@link #generate(String, int, FakerContext)} sends to the model at the same time.
+     */
+    private int bulkParallelism = 4;
+
+    /**
+     * When a key has no values yet, wait this long for other keys without values to be requested as well, so all of
+     * them can be generated using a single request to the model. 0 (default) sends a request per key right away.
+     */
+    private long batchWindowNanos = 0;
+
+    /**
+     * The maximum amount of keys generated using a single request to the model.
+     */
+    private int maxBatchKeys = 10;
+
+    /**
+     * Whether to stream the answer of the model, so values can be used as soon as they're generated, instead of
+     * waiting for the whole batch.
+     */
+    private boolean streaming = false;
+
+    /**
+     * The locales whose values are generated together: when one of them needs values for a key, the others which have
+     * none yet get theirs from the same request.
+     */
+    private volatile List<Locale> batchLocales = List.of();
+
+    protected LlmFakeValuesService(int amountOfItemsToGenerate) {
+        this.amountOfItemsToGenerate = amountOfItemsToGenerate;
+    }
+
+    /**
+     * @return The name of the model used to generate values.
+     */
+    protected abstract String getModelName();
+
+    /**
+     * @return The template of the prompt which asks the model for a batch of values of a single key, unless the user
+     * configured another template. The model should answer in the format {@link #parseValues(String)} understands.
+     */
+    protected abstract PromptTemplate getDefaultPromptTemplate();
+
+    /**
+     * Creates the prompt which asks the model for a batch of values. The prompt template is compiled once per key
+     * and locale, so this only appends the amount.
+     *
+     * @param key     The key to generate values for, such as "name.first_name".
+     * @param amount  The amount of values to ask for.
+     * @param context The context of the faker asking for the values, used for the locale.
+     */
+    protected String createPrompt(String key, int amount, FakerContext context) {
+        return prompt(key, context).render(amount);
+    }
+
+    /**
+     * Sends the prompt to the model.
+     *
+     * @return The text generated by the model, or null if the model didn't return anything.
+     */
+    protected abstract String complete(String prompt) throws Exception;
+
+    /**
+     * Sends the prompt to the model, without blocking the calling thread. By default, {@link #complete(String)}
+     * is called on the background executor, implementations which support non-blocking requests should override this.
+     *
+     * @return A future which completes with the text generated by the model.
+     */
+    protected CompletableFuture<String> completeAsync(String prompt) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return complete(prompt);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, getRefillExecutor());
+    }
+
+    /**
+     * Passes the cancellation of the result on to the request it was derived from, which futures created using methods
+     * such as {@code thenApply} don't do. Implementations of {@link #completeAsync(String)} use this, so cancelling a
+     * request, such as a hedged request which didn't answer first, actually stops it.
+     *
+     * @return The result.
+     */
+    protected static <T> CompletableFuture<T> cancelling(CompletableFuture<T> result, Future<?> request) {
+        result.whenComplete((value, failure) -> {
+            if (result.isCancelled()) {
+                request.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Sends the prompt to the model, and passes the generated text to the consumer piece by piece, as soon as the
+     * model generates it. By default, the whole text is passed at once using {@link #completeAsync(String)},
+     * implementations which support streaming should override this.
+     *
+     * @return A future which completes once the model is done.
+     */
+    protected CompletableFuture<Void> completeStreaming(String prompt, Consumer<String> chunks) {
+        return completeAsync(prompt).thenAccept(text -> {
+            if (text != null) {
+                chunks.accept(text);
+            }
+        });
+    }
+
+    /**
+     * Extracts the values from the text the model generated for a prompt created by
+     * {@link #createPrompt(String, int, FakerContext)}.
+     */
+    protected abstract List<String> parseValues(String text);
+
+    /**
+     * Creates the prompt which asks the model for a batch of values for multiple keys at once. The model should
+     * answer with a json object, with an array field per key.
+     */
+    protected String createPrompt(List<String> keys, int amount, FakerContext context) {
+        StringBuilder prompt = new StringBuilder(200 + 50 * keys.size())
+                .append("You are an generator of fake data which looks like real data.\n")
+                .append("Answer ONLY with a json object, which has the following fields. Every field is an array of ")
+                .append(amount).append(' ').append(prompt(keys.get(0), context).language()).append(" items of:\n");
+        for (String key : keys) {
+            prompt.append("\"").append(key).append("\": ").append(prompt(key, context).key()).append('\n');
+        }
+        return prompt.toString();
+    }
+
+    /**
+     * Extracts the values per key from the text the model generated for a prompt created by
+     * {@link #createPrompt(List, int, FakerContext)}. Keys the model left out are missing from the result.
+     */
+    protected Map<String, List<String>> parseValues(String text, List<String> keys) {
+        String stripped = text.strip()
+                .replace("```json", "")
+                .replace("```", "");
+
+        JsonObject json = gson.fromJson(stripped, JsonObject.class);
+        Map<String, List<String>> values = new HashMap<>();
+        for (String key : keys) {
+            JsonElement element = json.get(key);
+            if (element != null && element.isJsonArray()) {
+                List<String> keyValues = new ArrayList<>();
+                for (JsonElement value : element.getAsJsonArray()) {
+                    keyValues.add(value.getAsString());
+                }
+                values.put(key, keyValues);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Creates the prompt which asks the model for a batch of values for a key in multiple languages at once. The model
+     * should answer with a json object, with an array field per language tag.
+     */
+    protected String createLocalesPrompt(String key, List<Locale> locales, int amount) {
+        StringBuilder prompt = new StringBuilder(200 + 50 * locales.size())
+                .append("You are an generator of fake data which looks like real data.\n")
+                .append("Answer ONLY with a json object, which has the following fields. Every field is an array of ")
+                .append(amount).append(" items of ").append(prompt(key, locales.get(0)).key())
+                .append(", which look real in the country and language of the field:\n");
+        for (Locale locale : locales) {
+            prompt.append("\"").append(locale.toLanguageTag()).append("\": ")
+                    .append(localeNames.computeIfAbsent(locale, l -> l.getDisplayName(Locale.ENGLISH))).append('\n');
+        }
+        return prompt.toString();
+    }
+
+    /**
+     * Creates the prompt which asks the model for records, in which the values of the keys belong together. The model
+     * should answer with a json array of objects, with a field per key.
+     */
+    protected String createRecordPrompt(List<String> keys, int amount, FakerContext context) {
+        StringBuilder prompt = new StringBuilder(300 + 50 * keys.size())
+                .append("You are an generator of fake data which looks like real data.\n")
+                .append("Answer ONLY with a json array of ").append(amount).append(" objects. The fields of an object ")
+                .append("belong together, such as the name, email address and city of the same person. Every object ")
+                .append("has the following fields, in ").append(prompt(keys.get(0), context).language()).append(":\n");
+        for (String key : keys) {
+            prompt.append("\"").append(key).append("\": ").append(prompt(key, context).key()).append('\n');
+        }
+        return prompt.toString();
+    }
+
+    /**
+     * Extracts the records from the text the model generated for a prompt created by
+     * {@link #createRecordPrompt(List, int, FakerContext)}. Besides an array, an object with an array field is
+     * accepted too, since some models only answer with json objects. Records which miss keys are skipped later on.
+     */
+    protected List<Map<String, String>> parseRecords(String text, List<String> keys) {
+        String stripped = text.strip()
+                .replace("```json", "")
+                .replace("```", "");
+
+        JsonElement json = gson.fromJson(stripped, JsonElement.class);
+        if (json != null && json.isJsonObject()) {
+            json = json.getAsJsonObject().entrySet().stream()
+                    .map(Map.Entry::getValue)
+                    .filter(JsonElement::isJsonArray)
+                    .findFirst()
+                    .orElse(null);
+        }
+        if (json == null || !json.isJsonArray()) {
+            return List.of();
+        }
+
+        List<Map<String, String>> records = new ArrayList<>();
+        for (JsonElement element : json.getAsJsonArray()) {
+            if (!element.isJsonObject()) {
+                continue;
+            }
+            JsonObject object = element.getAsJsonObject();
+            Map<String, String> record = new HashMap<>();
+            for (String key : keys) {
+                JsonElement value = object.get(key);
+                if (value != null && !value.isJsonNull()) {
+                    record.put(key, value.isJsonPrimitive() ? value.getAsString() : value.toString());
+                }
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * Implementations call this when the model reports how many tokens it used for a prompt, so the tokens can be
+     * accounted to the model and the keys of the prompt.
+     */
+    protected void recordTokens(String prompt, int promptTokens, int completionTokens) {
+        LlmFakeValuesService primary = hedgedFor.get(prompt);
+        if (primary != null) {
+            primary.recordTokens(prompt, promptTokens, completionTokens);
+            return;
+        }
+        InFlight request = inFlight.get(prompt);
+        metrics.tokens(getModelName(), request == null ? List.of() : request.keys, promptTokens, completionTokens);
+        if (request != null && !request.truncated) {
+            batchSizer.learn(request.keys, request.amount, completionTokens);
+        }
+    }
+
+    /**
+     * Implementations call this when the model stopped generating because it reached the maximum amount of tokens,
+     * before {@link #recordTokens(String, int, int)}. Such an answer usually isn't valid json, so the batches of the
+     * keys of the prompt are made smaller.
+     */
+    protected void recordTruncation(String prompt) {
+        LlmFakeValuesService primary = hedgedFor.get(prompt);
+        if (primary != null) {
+            primary.recordTruncation(prompt);
+            return;
+        }
+        InFlight request = inFlight.get(prompt);
+        if (request != null) {
+            request.truncated = true;
+            metrics.truncation(getModelName(), request.keys);
+            batchSizer.truncated(request.keys, request.amount, getMaxCompletionTokens());
+        }
+    }
+
+    /**
+     * @return The maximum amount of tokens the model may generate per request, or 0 if there's no limit.
+     * Used to size batches when {@link #setAdaptiveBatchSize(boolean) adaptive batch sizes} are enabled.
+     */
+    protected int getMaxCompletionTokens() {
+        return 0;
+    }
+
+    @Override
+    public String resolve(String key, AbstractProvider<?> provider, FakerContext context) {
+        return draw(key, provider, provider == null ? null : provider.getFaker(), null, null, context);
+    }
+
+    /**
+     * Resolves the key from the values generated by the model, like {@link #resolve(String, AbstractProvider, FakerContext)}.
+     * This is what {@code faker.resolve("name.first_name")} ends up calling.
+     */
+    @Override
+    public String resolve(String key, Object current, ProviderRegistration root, Supplier<String> exceptionMessage, FakerContext context) {
+        return draw(key, current, root, null, exceptionMessage, context);
+    }
+
+    /**
+     * Resolves the placeholders of the expression which refer to keys, such as "#{Name.first_name}", or "#{first_name}"
+     * within the Name provider, from the values generated by the model. The expression is parsed only once, and when
+     * several of its keys have no values yet, they're generated using a single request to the model. Placeholders
+     * which don't refer to a key of Datafaker, such as method calls with arguments, are resolved by Datafaker.
+     */
+    @Override
+    protected String resolveExpression(String expression, Object current, ProviderRegistration root, FakerContext context) {
+        CompiledExpression compiled = expressions.computeIfAbsent(
+                new ExpressionKey(expression, current == null ? null : current.getClass(), context.getLocale()),
+                k -> CompiledExpression.compile(expression, content -> keyOf(content, current, context)));
+        if (compiled.keys().isEmpty()) {
+            return super.resolveExpression(expression, current, root, context);
+        }
+        prefetchCold(compiled.keys(), context);
+
+        StringBuilder result = new StringBuilder();
+        CompiledExpression.Placeholder[] placeholders = compiled.placeholders();
+        for (int i = 0; i < placeholders.length; i++) {
+            CompiledExpression.Placeholder placeholder = placeholders[i];
+            String value = placeholder.key() == null
+                    ? super.resolveExpression(placeholder.text(), current, root, context)
+                    : draw(placeholder.key(), current, root, placeholder.text(), null, context);
+            if (value == null) {
+                return null;
+            }
+            result.append(compiled.literal(i)).append(value);
+        }
+        return result.append(compiled.literal(placeholders.length)).toString();
+    }
+
+    /**
+     * @return The key a placeholder refers to, such as "name.first_name" for "Name.first_name", or for "first_name"
+     * when the current provider is Name. Null if Datafaker has no values for such a key.
+     */
+    private String keyOf(String content, Object current, FakerContext context) {
+        int dot = content.indexOf('.');
+        String key;
+        if (dot < 0) {
+            if (!(current instanceof AbstractProvider)) {
+                return null;
+            }
+            key = toYamlName(current.getClass().getSimpleName()) + "." + toYamlName(content);
+        } else if (content.indexOf('.', dot + 1) < 0) {
+            key = toYamlName(content.substring(0, dot)) + "." + toYamlName(content.substring(dot + 1));
+        } else {
+            return null;
+        }
+
+        Object values = fetchObject(key, context);
+        return values instanceof List || values instanceof String ? key : null;
+    }
+
+    /**
+     * Converts names such as "PhoneNumber" or "firstName" to the names used in the YAML files: "phone_number" and
+     * "first_name".
+     */
+    private static String toYamlName(String name) {
+        StringBuilder yamlName = new StringBuilder(name.length() + 4);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c)) {
+                if (i > 0 && name.charAt(i - 1) != '_') {
+                    yamlName.append('_');
+                }
+                yamlName.append(Character.toLowerCase(c));
+            } else {
+                yamlName.append(c);
+            }
+        }
+        return yamlName.toString();
+    }
+
+    /**
+     * Generates the values of all keys of an expression which have none yet using a single request, instead of a
+     * request per key while resolving the placeholders one by one.
+     */
+    private void prefetchCold(List<String> keys, FakerContext context) {
+        if (keys.size() < 2 || latencyBudgetNanos > 0) {
+            // With a latency budget, every key waits for the model on its own, and falls back on its own
+            return;
+        }
+        List<String> cold = null;
+        for (String key : keys) {
+            if (pool.get(context.getLocale(), key).size() == 0) {
+                if (cold == null) {
+                    cold = new ArrayList<>();
+                }
+                cold.add(key);
+            }
+        }
+        if (cold != null && cold.size() > 1) {
+            prefetch(cold, context);
+        }
+    }
+
+    /**
+     * Draws a value of the key, and waits for the model if there is none.
+     *
+     * @param current          The provider which resolves the key, if any.
+     * @param root             The faker, used to resolve the built-in values when falling back.
+     * @param placeholder      The placeholder the key was found in, if any. Falling back resolves the placeholder
+     *                         instead of the key, since the key might only be relative to another provider.
+     * @param exceptionMessage The message of the exception thrown when falling back to a key Datafaker doesn't
+     *                         know, or null for the default message.
+     */
+    private String draw(String key, Object current, ProviderRegistration root, String placeholder,
+                        Supplier<String> exceptionMessage, FakerContext context) {
+        // The hit path (drawing a cached value) doesn't allocate, so keep the allocations on the miss path.
+        ValuePool.Values values = pool.get(context.getLocale(), key);
+        Random random = context.getRandomService().getRandomInternal();
+
+        String value = values.draw(random, !reuseValues);
+        if (value != null) {
+            metrics.hit(getModelName(), key);
+        } else {
+            metrics.miss(getModelName(), key);
+            if (latencyBudgetNanos > 0) {
+                return resolveWithinBudget(key, current, root, placeholder, exceptionMessage, values, random, context);
+            }
+            do {
+                try {
+                    ValuePool.Loader loader = streaming
+                            ? asyncLoader(key, context, Priority.FOREGROUND)
+                            : sink -> call(() -> loadValues(key, context));
+                    if (values.awaitValues(loader).join() == 0) {
+                        return failed(key, null);
+                    }
+                } catch (CompletionException | CancellationException e) {
+                    return failed(key, e.getCause() == null ? e : e.getCause());
+                }
+            } while ((value = values.draw(random, !reuseValues)) == null);
+        }
+
+        afterDraw(key, values, context);
+        return value;
+    }
+
+    /**
+     * Non-blocking counterpart of {@link #resolve(String, AbstractProvider, FakerContext)}. When values for the key
+     * are cached, the returned future is completed already. Otherwise, it completes once the model has answered,
+     * without blocking the calling thread in the meantime.
+     *
+     * @param key     The key to resolve, such as "name.first_name".
+     * @param context The context used for the locale.
+     * @return A future which completes with the value, or with null if the model failed to generate any values.
+     */
+    public CompletableFuture<String> resolveAsync(String key, FakerContext context) {
+        ValuePool.Values values = pool.get(context.getLocale(), key);
+        String value = values.draw(context.getRandomService().getRandomInternal(), !reuseValues);
+        if (value != null) {
+            metrics.hit(getModelName(), key);
+            afterDraw(key, values, context);
+            return CompletableFuture.completedFuture(value);
+        }
+
+        metrics.miss(getModelName(), key);
+        return values.awaitValues(asyncLoader(key, context, Priority.FOREGROUND))
+                .handle((added, failure) -> failure == null && added > 0)
+                .thenCompose(loaded -> loaded ? resolveAsync(key, context) : CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Creates a publisher which emits an endless stream of values for the key, at the pace its subscribers request
+     * them. Values are resolved using {@link #resolveAsync(String, FakerContext)}, so no thread is blocked while
+     * waiting for the model. When no value can be generated, the subscriber receives an error.
+     *
+     * @param key     The key to publish values of, such as "name.first_name".
+     * @param context The context used for the locale.
+     */
+    public Flow.Publisher<String> publisher(String key, FakerContext context) {
+        return new ValuePublisher(() -> resolveAsync(key, context));
+    }
+
+    /**
+     * Waits for the model until the latency budget is spent, and resolves the key from the values built into
+     * Datafaker otherwise. The load isn't cancelled, so the pool still fills in the background.
+     * <p>
+     * Built-in values are often expressions which refer to other keys, such as "#{female_first_name}". Those keys are
+     * resolved from the built-in values right away, so a fallback never waits for the model more than once.
+     */
+    private String resolveWithinBudget(String key, Object current, ProviderRegistration root, String placeholder,
+                                       Supplier<String> exceptionMessage, ValuePool.Values values, Random random,
+                                       FakerContext context) {
+        long deadline = System.nanoTime() + latencyBudgetNanos;
+        String value = null;
+        boolean nested = fallingBack.get() != null;
+        // Don't keep a model which is down busy with requests for every miss
+        if (!nested && !values.failedWithin(failureBackoffNanos)) {
+            try {
+                do {
+                    long remaining = deadline - System.nanoTime();
+                    if (values.awaitValues(asyncLoader(key, context, Priority.FOREGROUND)).get(remaining, TimeUnit.NANOSECONDS) == 0) {
+                        break;
+                    }
+                } while ((value = values.draw(random, !reuseValues)) == null);
+            } catch (TimeoutException | ExecutionException | CancellationException e) {
+                // Fall back
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (value != null) {
+            afterDraw(key, values, context);
+            return value;
+        }
+        metrics.fallback(getModelName(), key);
+        if (nested) {
+            value = fallback(key, current, root, placeholder, exceptionMessage, context);
+        } else {
+            fallingBack.set(Boolean.TRUE);
+            try {
+                value = fallback(key, current, root, placeholder, exceptionMessage, context);
+            } finally {
+                fallingBack.remove();
+            }
+        }
+        return value == null ? failed(key, null) : value;
+    }
+
+    private String fallback(String key, Object current, ProviderRegistration root, String placeholder,
+                            Supplier<String> exceptionMessage, FakerContext context) {
+        if (placeholder != null) {
+            return super.resolveExpression(placeholder, current, root, context);
+        }
+        return super.resolve(key, current, root,
+                exceptionMessage == null ? () -> key + " resulted in null expression" : exceptionMessage, context);
+    }
+
+    private String failed(String key, Throwable cause) {
+        if (failOnError) {
+            throw new IllegalStateException("The model did not generate any values for " + key, cause);
+        }
+        return null;
+    }
+
+    private void afterDraw(String key, ValuePool.Values values, FakerContext context) {
+        int size = values.size();
+        metrics.poolDepth(getModelName(), context.getLocale(), key, size);
+        if (reuseValues) {
+            if (values.isStale(refreshAfterDraws, refreshAfterNanos)) {
+                values.refill(asyncLoader(key, context, Priority.BACKGROUND));
+            }
+        } else if (size < refillThreshold) {
+            values.refill(asyncLoader(key, context, Priority.BACKGROUND));
+        }
+    }
+
+    private ValuePool.Loader asyncLoader(String key, FakerContext context, Priority priority) {
+        return streaming ? sink -> streamValues(key, context, sink, priority) : sink -> loadValuesAsync(key, context, priority);
+    }
+
+    /**
+     * Generates a batch of values for a key in one go, bypassing the cache. The work is split over multiple requests
+     * to the model, which run in parallel.
+     * <p>
+     * The returned values are unique. When the model fails, or keeps coming up with values it generated before,
+     * fewer values than requested are returned.
+     *
+     * @param key     The key to generate values for, such as "name.first_name".
+     * @param amount  The amount of values to generate.
+     * @param context The context used for the locale.
+     */
+    public List<String> generate(String key, int amount, FakerContext context) {
+        Set<String> unique = new LinkedHashSet<>();
+        while (unique.size() < amount) {
+            int missing = amount - unique.size();
+            int batchSize = adaptiveBatchSize
+                    ? batchSizer.capacity(List.of(key), maxAmountOfItemsToGenerate, getMaxCompletionTokens(), amountOfItemsToGenerate)
+                    : amountOfItemsToGenerate;
+            int requests = Math.min(bulkParallelism, (missing + batchSize - 1) / batchSize);
+
+            List<CompletableFuture<List<String>>> batches = new ArrayList<>(requests);
+            for (int i = 0; i < requests; i++) {
+                int size = Math.min(batchSize, missing - i * batchSize);
+                // Missing values are asked for in the next round
+                batches.add(generateBatchAsync(key, size, context, Priority.FOREGROUND, false));
+            }
+
+            int before = unique.size();
+            for (CompletableFuture<List<String>> batch : batches) {
+                try {
+                    List<String> values = batch.join();
+                    if (values != null) {
+                        unique.addAll(values);
+                    }
+                } catch (CompletionException | CancellationException e) {
+                    // Ignore the failed batch, the missing values are asked for again in the next round.
+                }
+            }
+            if (unique.size() == before) {
+                break;
+            }
+        }
+        return new ArrayList<>(unique).subList(0, Math.min(amount, unique.size()));
+    }
+
+    /**
+     * @see #generate(String, int, FakerContext)
+     */
+    public Stream<String> stream(String key, int amount, FakerContext context) {
+        return generate(key, amount, context).stream();
+    }
+
+    /**
+     * Fills the cache of all given keys which have no values yet, using a single request to the model
+     * (or a few, if there are more than {@link #setMaxBatchKeys(int) maxBatchKeys} keys).
+     * This is useful when it is known up front which keys are going to be used, for example for a schema.
+     *
+     * @param keys    The keys to generate values for, such as "name.first_name" and "address.city".
+     * @param context The context used for the locale.
+     */
+    public void prefetch(List<String> keys, FakerContext context) {
+        List<String> cold = new ArrayList<>();
+        Map<String, List<String>> restoredValues = new HashMap<>();
+        for (String key : keys) {
+            if (pool.get(context.getLocale(), key).size() > 0) {
+                continue;
+            }
+            List<String> stored = restore(key, context);
+            if (stored.isEmpty()) {
+                cold.add(key);
+            } else {
+                restoredValues.put(key, stored);
+            }
+        }
+
+        Map<String, List<String>> values = new HashMap<>(restoredValues);
+        for (int from = 0; from < cold.size(); from += maxBatchKeys) {
+            List<String> batch = cold.subList(from, Math.min(cold.size(), from + maxBatchKeys));
+            try {
+                values.putAll(generateBatch(batch, batchSize(batch), context, Priority.FOREGROUND));
+            } catch (Exception e) {
+                // These keys are generated one by one once they're used.
+            }
+        }
+        values.forEach((key, keyValues) -> {
+            ValuePool.Values pooled = pool.get(context.getLocale(), key);
+            pooled.add(keyValues);
+            metrics.poolDepth(getModelName(), context.getLocale(), key, pooled.size());
+        });
+    }
+
+    /**
+     * Fills the pools of the keys up to the depth, all at the same time, so the keys don't have to wait for the model
+     * one by one when they're first used. Every key is filled by its own task on the warm-up executor.
+     *
+     * @param depth The amount of values every pool should have, which may take multiple requests per key.
+     * @return A future which completes once every pool is filled. Keys which failed are generated once they're used,
+     * unless errors are thrown, in which case the future completes with the first error.
+     */
+    public CompletableFuture<Void> warmUp(List<String> keys, int depth, FakerContext context) {
+        Executor executor = warmUpExecutor == null ? getRefillExecutor() : warmUpExecutor;
+        CompletableFuture<?>[] fills = new CompletableFuture<?>[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
+            fills[i] = CompletableFuture.runAsync(() -> fill(key, depth, context), executor);
+        }
+        return CompletableFuture.allOf(fills);
+    }
+
+    /**
+     * Fills the pools of all keys of the provider up to the depth, see {@link #warmUp(List, int, FakerContext)}.
+     *
+     * @param provider A provider such as {@code Name.class}, whose keys are looked up in the locale of the context. The
+     *                 keys are only known once the service is used by a {@code Faker}.
+     */
+    public CompletableFuture<Void> warmUp(Class<? extends AbstractProvider<?>> provider, int depth, FakerContext context) {
+        return warmUp(keysOf(provider, context), depth, context);
+    }
+
+    /**
+     * @return The keys of the provider which have a list of values, such as "name.first_name", but not "name.title"
+     * which consists of several lists. Datafaker also knows the keys by their camel case name, such as "firstName",
+     * which are skipped. The keys are only known once the service is used by a {@code Faker}.
+     */
+    public List<String> keysOf(Class<? extends AbstractProvider<?>> provider, FakerContext context) {
+        String name = toYamlName(provider.getSimpleName());
+        List<String> keys = new ArrayList<>();
+        if (fetchObject(name, context) instanceof Map<?, ?> section) {
+            section.forEach((key, values) -> {
+                if (key instanceof String yamlName && yamlName.equals(toYamlName(yamlName))
+                        && values instanceof List<?> list && !list.isEmpty() && list.stream().allMatch(String.class::isInstance)) {
+                    keys.add(name + "." + key);
+                }
+            });
+        }
+        return keys;
+    }
+
+    private void fill(String key, int depth, FakerContext context) {
+        ValuePool.Values pooled = pool.get(context.getLocale(), key);
+        List<String> stored = restore(key, context);
+        if (!stored.isEmpty()) {
+            pooled.add(stored);
+        }
+        while (pooled.size() < depth) {
+            List<String> values;
+            try {
+                // The loop asks for the dropped values, so there's no need to top up
+                values = generateBatchAsync(key, Math.min(batchSize(key), depth - pooled.size()), context, Priority.BACKGROUND, false).join();
+            } catch (CompletionException e) {
+                failed(key, e.getCause());
+                return;
+            }
+            // Stop once the model comes up with nothing new, since it might have run out of values for the key
+            if (values == null || values.isEmpty()) {
+                return;
+            }
+            pooled.add(values);
+            metrics.poolDepth(getModelName(), context.getLocale(), key, pooled.size());
+        }
+    }
+
+    /**
+     * Draws a record, in which the values of the keys belong together, such as the first name, last name and email
+     * address of the same person. Records are generated in batches, using a single request for all keys, and
+     * cached per set of keys, separately from the values of the keys themselves. The records are refilled and, when
+     * reusing values, refreshed like the values of a single key.
+     *
+     * @param keys    The keys to generate values for, such as "name.first_name" and "internet.email_address".
+     * @param context The context used for the locale.
+     * @return The values per key, in the order of the keys, or null if the model failed to generate any records.
+     */
+    public Map<String, String> resolveRecord(List<String> keys, FakerContext context) {
+        Map<List<String>, RecordPool> localeRecords = recordPools.computeIfAbsent(context.getLocale(), l -> new ConcurrentHashMap<>());
+        RecordPool records = localeRecords.get(keys);
+        if (records == null) {
+            records = localeRecords.computeIfAbsent(List.copyOf(keys), RecordPool::new);
+        }
+        Random random = context.getRandomService().getRandomInternal();
+        List<String> recordKeys = records.keys();
+
+        Map<String, String> record = records.draw(random, !reuseValues);
+        if (record == null) {
+            do {
+                try {
+                    RecordPool.Loader loader = () -> call(() -> generateRecords(recordKeys, context, Priority.FOREGROUND));
+                    if (records.awaitRecords(loader).join() == 0) {
+                        failed(String.join(", ", keys), null);
+                        return null;
+                    }
+                } catch (CompletionException | CancellationException e) {
+                    failed(String.join(", ", keys), e.getCause() == null ? e : e.getCause());
+                    return null;
+                }
+            } while ((record = records.draw(random, !reuseValues)) == null);
+        }
+
+        // Refilled and refreshed the same way as the values of a single key
+        if (reuseValues ? records.isStale(refreshAfterDraws, refreshAfterNanos) : records.size() < refillThreshold) {
+            records.refill(() -> CompletableFuture.supplyAsync(() -> {
+                try {
+                    return generateRecords(recordKeys, context, Priority.BACKGROUND);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, getRefillExecutor()));
+        }
+        return record;
+    }
+
+    private List<Map<String, String>> generateRecords(List<String> keys, FakerContext context, Priority priority) throws Exception {
+        int amount = batchSize(keys);
+        String text = complete(createRecordPrompt(keys, amount, context), keys, amount, priority);
+        if (text == null) {
+            return List.of();
+        }
+        try {
+            return parseRecords(text, keys);
+        } catch (RuntimeException e) {
+            metrics.parseFailure(getModelName(), keys);
+            throw e;
+        }
+    }
+
+    /**
+     * Captures the values which are currently cached, so they can be {@link #loadSnapshot(PoolSnapshot) loaded}
+     * again later, for example in another run.
+     */
+    public PoolSnapshot snapshot() {
+        return new PoolSnapshot(pool.snapshot());
+    }
+
+    /**
+     * Replaces the cached values of every key in the snapshot by the values of the snapshot.
+     * <p>
+     * Draws then only depend on the random source of the {@link FakerContext}, so the same seed gives the same values
+     * in every run, without calling the model. This holds as long as no values are added or removed: when
+     * {@link #setReuseValues(boolean) reusing values} without refreshing them, any amount of threads can draw from the
+     * snapshot, each reproducibly with its own {@link RandomStreams stream}. When values are handed out only once,
+     * draws are reproducible for a single thread until a key runs out of values.
+     */
+    public void loadSnapshot(PoolSnapshot snapshot) {
+        for (Locale locale : snapshot.getLocales()) {
+            for (String key : snapshot.getKeys(locale)) {
+                List<String> values = snapshot.getValues(locale, key);
+                ValuePool.Values pooled = pool.get(locale, key);
+                pooled.replace(values);
+                cleaner.seen(locale, key, values);
+                metrics.poolDepth(getModelName(), locale, key, pooled.size());
+            }
+        }
+    }
+
+    private List<String> loadValues(String key, FakerContext context) throws Exception {
+        List<String> stored = restore(key, context);
+        if (!stored.isEmpty()) {
+            return stored;
+        }
+
+        List<Locale> locales = localesWithoutValues(key, context);
+        if (locales.size() > 1) {
+            return generateLocales(key, locales, context, Priority.FOREGROUND);
+        }
+
+        KeyBatcher batcher = getBatcher();
+        if (batcher != null) {
+            return batcher.submit(key, context, Priority.FOREGROUND).get();
+        }
+        return generateBatch(key, batchSize(key), context, Priority.FOREGROUND);
+    }
+
+    private CompletableFuture<List<String>> loadValuesAsync(String key, FakerContext context, Priority priority) {
+        List<String> stored = restore(key, context);
+        if (!stored.isEmpty()) {
+            return CompletableFuture.completedFuture(stored);
+        }
+
+        List<Locale> locales = localesWithoutValues(key, context);
+        if (locales.size() > 1) {
+            return generateLocalesAsync(key, locales, context, priority);
+        }
+
+        KeyBatcher batcher = getBatcher();
+        if (batcher != null) {
+            return batcher.submit(key, context, priority);
+        }
+        return generateBatchAsync(key, batchSize(key), context, priority);
+    }
+
+    /**
+     * Streams a batch of values for the key, passing every value to the sink as soon as the model has generated it.
+     */
+    private CompletableFuture<List<String>> streamValues(String key, FakerContext context, Consumer<String> sink, Priority priority) {
+        List<String> stored = restore(key, context);
+        if (!stored.isEmpty()) {
+            return CompletableFuture.completedFuture(stored);
+        }
+
+        List<Locale> locales = localesWithoutValues(key, context);
+        if (locales.size() > 1) {
+            // Values of multiple locales are not streamed either, for the same reason as multiple keys
+            return generateLocalesAsync(key, locales, context, priority);
+        }
+
+        KeyBatcher batcher = getBatcher();
+        if (batcher != null) {
+            // Values of multiple keys are not streamed, since they arrive mixed up in a single json object.
+            return batcher.submit(key, context, priority);
+        }
+
+        List<String> streamed = new CopyOnWriteArrayList<>();
+        AtomicInteger dropped = new AtomicInteger();
+        Consumer<String> values = value -> {
+            ValueCleaner.Cleaned cleaned = cleaner.clean(context.getLocale(), key, List.of(value), getValueFilter(key), deduplicate);
+            int duplicates = 1 - cleaned.values().size() - cleaned.invalid();
+            metrics.filtered(getModelName(), key, 1, duplicates, cleaned.invalid());
+            if (cleaned.values().isEmpty()) {
+                dropped.incrementAndGet();
+            } else {
+                streamed.add(cleaned.values().get(0));
+                sink.accept(cleaned.values().get(0));
+            }
+        };
+        int amount = batchSize(key);
+        String prompt = createPrompt(key, amount, context);
+        // Every attempt gets its own parser, as a failed attempt might have stopped halfway a value
+        return measure(prompt, List.of(key), amount, priority, () -> completeStreaming(prompt, new StreamingValueParser(values)::feed))
+                .thenApply(done -> {
+                    store(key, streamed, context);
+                    if (dropped.get() > 0 && !streamed.isEmpty()) {
+                        topUp(key, dropped.get(), context);
+                    }
+                    // All values were passed to the sink already
+                    return List.of();
+                });
+    }
+
+    /**
+     * @return The stored values of the key, if they weren't restored before.
+     */
+    private List<String> restore(String key, FakerContext context) {
+        ValueStore store = valueStore;
+        if (store != null) {
+            StoreKey storeKey = storeKey(key, context);
+            if (restored.add(storeKey)) {
+                try {
+                    List<String> values = store.load(storeKey);
+                    cleaner.seen(context.getLocale(), key, values);
+                    return values;
+                } catch (IOException e) {
+                    return List.of();
+                }
+            }
+        }
+        return List.of();
+    }
+
+    private void markRestored(String key, FakerContext context) {
+        if (valueStore != null) {
+            restored.add(storeKey(key, context));
+        }
+    }
+
+    private List<String> generateBatch(String key, int amount, FakerContext context, Priority priority) throws Exception {
+        List<String> keys = List.of(key);
+        String text = complete(createPrompt(key, amount, context), keys, amount, priority);
+        return store(key, text == null ? null : clean(key, parse(text, keys), context, true, true), context);
+    }
+
+    private CompletableFuture<List<String>> generateBatchAsync(String key, int amount, FakerContext context, Priority priority) {
+        return generateBatchAsync(key, amount, context, priority, true);
+    }
+
+    /**
+     * @param refill Whether the values refill a pool which ran out. If so, the values which were dropped are asked for
+     *               right away, instead of waiting for the next load, and the values are repeated when the model came up
+     *               with nothing new. Otherwise, only new values are returned.
+     */
+    private CompletableFuture<List<String>> generateBatchAsync(String key, int amount, FakerContext context, Priority priority,
+                                                               boolean refill) {
+        String prompt = createPrompt(key, amount, context);
+        List<String> keys = List.of(key);
+        return measure(prompt, keys, amount, priority, () -> requestAsync(prompt, keys, priority))
+                .thenApply(text -> store(key, text == null ? null : clean(key, parse(text, keys), context, refill, refill), context));
+    }
+
+    /**
+     * Normalizes the values, and drops the ones which don't pass the filter of the key, or which were generated before.
+     *
+     * @param topUp  Whether to ask the model for as many values as were dropped, in the background.
+     * @param repeat Whether to repeat the values when the model came up with nothing new, since the model might simply
+     *               have run out of values for the key, and the pool needs values to hand out.
+     */
+    private List<String> clean(String key, List<String> values, FakerContext context, boolean topUp, boolean repeat) {
+        if (values == null) {
+            return null;
+        }
+        ValueCleaner.Cleaned cleaned = cleaner.clean(context.getLocale(), key, values, getValueFilter(key), deduplicate);
+        int dropped = values.size() - cleaned.values().size();
+        metrics.filtered(getModelName(), key, values.size(), dropped - cleaned.invalid(), cleaned.invalid());
+
+        if (cleaned.values().isEmpty()) {
+            return repeat ? cleaned.duplicates() : cleaned.values();
+        }
+        if (topUp && dropped > 0) {
+            topUp(key, dropped, context);
+        }
+        return cleaned.values();
+    }
+
+    /**
+     * Asks the model for a few more values in the background, to make up for the values which were dropped from a
+     * batch, instead of asking for a whole new batch once the values run out.
+     */
+    private void topUp(String key, int amount, FakerContext context) {
+        generateBatchAsync(key, amount, context, Priority.BACKGROUND, false)
+                .thenAccept(values -> {
+                    if (values != null && !values.isEmpty()) {
+                        ValuePool.Values pooled = pool.get(context.getLocale(), key);
+                        pooled.add(values);
+                        metrics.poolDepth(getModelName(), context.getLocale(), key, pooled.size());
+                    }
+                });
+    }
+
+    private ValueFilter getValueFilter(String key) {
+        ValueFilter filter = valueFilters.get(key);
+        return filter == null ? valueFilter : filter;
+    }
+
+    private List<String> store(String key, List<String> values, FakerContext context) {
+        ValueStore store = valueStore;
+        if (store != null && values != null) {
+            try {
+                store.append(storeKey(key, context), values);
+            } catch (IOException e) {
+                // The values can still be used, they just won't survive a restart.
+            }
+        }
+        return values;
+    }
+
+    private Map<String, List<String>> generateBatch(List<String> keys, int amount, FakerContext context, Priority priority) throws Exception {
+        if (keys.size() == 1) {
+            List<String> values = generateBatch(keys.get(0), amount, context, priority);
+            return values == null ? Map.of() : Map.of(keys.get(0), values);
+        }
+
+        String text = complete(createPrompt(keys, amount, context), keys, amount, priority);
+        if (text == null) {
+            return Map.of();
+        }
+        Map<String, List<String>> values;
+        try {
+            values = parseValues(text, keys);
+        } catch (RuntimeException e) {
+            metrics.parseFailure(getModelName(), keys);
+            throw e;
+        }
+        Map<String, List<String>> cleaned = new HashMap<>();
+        values.forEach((key, keyValues) -> cleaned.put(key, store(key, clean(key, keyValues, context, true, true), context)));
+        return cleaned;
+    }
+
+    /**
+     * @return The locale of the context, followed by the other batch locales which have no values for the key yet, or
+     * just the locale of the context if it isn't one of the batch locales. Locales which still have stored values get
+     * those restored instead.
+     */
+    private List<Locale> localesWithoutValues(String key, FakerContext context) {
+        List<Locale> batchLocales = this.batchLocales;
+        Locale locale = context.getLocale();
+        if (!batchLocales.contains(locale)) {
+            return List.of(locale);
+        }
+        List<Locale> locales = new ArrayList<>(batchLocales.size());
+        locales.add(locale);
+        for (Locale other : batchLocales) {
+            if (other.equals(locale)) {
+                continue;
+            }
+            ValuePool.Values pooled = pool.get(other, key);
+            if (pooled.size() == 0) {
+                List<String> stored = restore(key, new FakerContext(other, context.getRandomService()));
+                if (stored.isEmpty()) {
+                    locales.add(other);
+                } else {
+                    pooled.add(stored);
+                    metrics.poolDepth(getModelName(), other, key, pooled.size());
+                }
+            }
+        }
+        return locales;
+    }
+
+    /**
+     * Generates values for the key in all locales using a single request.
+     *
+     * @param locales The locales to generate values for, starting with the locale of the context.
+     * @return The values for the locale of the context. The values of the other locales are added to their pools.
+     */
+    private List<String> generateLocales(String key, List<Locale> locales, FakerContext context, Priority priority) throws Exception {
+        int amount = batchSize(key);
+        List<String> keys = List.of(key);
+        String text = complete(createLocalesPrompt(key, locales, amount), keys, amount * locales.size(), priority);
+        return text == null ? null : storeLocales(key, text, locales, context);
+    }
+
+    private CompletableFuture<List<String>> generateLocalesAsync(String key, List<Locale> locales, FakerContext context, Priority priority) {
+        int amount = batchSize(key);
+        String prompt = createLocalesPrompt(key, locales, amount);
+        return measure(prompt, List.of(key), amount * locales.size(), priority, () -> requestAsync(prompt, List.of(key), priority))
+                .thenApply(text -> text == null ? null : storeLocales(key, text, locales, context));
+    }
+
+    private List<String> storeLocales(String key, String text, List<Locale> locales, FakerContext context) {
+        List<String> tags = new ArrayList<>(locales.size());
+        for (Locale locale : locales) {
+            tags.add(locale.toLanguageTag());
+        }
+        Map<String, List<String>> values;
+        try {
+            values = parseValues(text, tags);
+        } catch (RuntimeException e) {
+            metrics.parseFailure(getModelName(), List.of(key));
+            throw e;
+        }
+
+        List<String> own = List.of();
+        for (Locale locale : locales) {
+            List<String> localeValues = values.get(locale.toLanguageTag());
+            if (localeValues == null) {
+                continue;
+            }
+            FakerContext localeContext = new FakerContext(locale, context.getRandomService());
+            // The values go straight into the pool, so restoring them once the pool runs dry would hand them out twice
+            markRestored(key, localeContext);
+            List<String> cleaned = store(key, clean(key, localeValues, localeContext, false, locale.equals(context.getLocale())), localeContext);
+            if (locale.equals(context.getLocale())) {
+                own = cleaned;
+            } else if (!cleaned.isEmpty()) {
+                ValuePool.Values pooled = pool.get(locale, key);
+                pooled.add(cleaned);
+                metrics.poolDepth(getModelName(), locale, key, pooled.size());
+            }
+        }
+        return own;
+    }
+
+    /**
+     * Sends the prompt to the model, measuring the request.
+     */
+    private String complete(String prompt, List<String> keys, int amount, Priority priority) throws Exception {
+        if (requestScheduler != null || (hedger != null && priority == Priority.FOREGROUND)) {
+            // The scheduler and the hedger send requests from their own threads
+            try {
+                return measure(prompt, keys, amount, priority, () -> requestAsync(prompt, keys, priority)).join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+
+        long start = System.nanoTime();
+        boolean failed = true;
+        begin(prompt, keys, amount);
+        try {
+            String text = complete(prompt);
+            failed = false;
+            return text;
+        } finally {
+            end(prompt);
+            metrics.request(getModelName(), keys, System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * Sends the prompt to the model without blocking, hedging the request if someone is waiting for its values.
+     */
+    private CompletableFuture<String> requestAsync(String prompt, List<String> keys, Priority priority) {
+        Hedger current = hedger;
+        if (current == null || priority != Priority.FOREGROUND) {
+            return completeAsync(prompt);
+        }
+        return current.complete(prompt, this::completeAsync, won -> metrics.hedged(getModelName(), keys, won));
+    }
+
+    /**
+     * Sends a request which another service hedged to the model. The tokens are recorded by that service, since the
+     * prompt was created for its keys and batch sizes.
+     */
+    private CompletableFuture<String> completeHedged(String prompt, LlmFakeValuesService primary) {
+        hedgedFor.put(prompt, primary);
+        CompletableFuture<String> result;
+        try {
+            result = completeAsync(prompt);
+        } catch (RuntimeException e) {
+            hedgedFor.remove(prompt, primary);
+            throw e;
+        }
+        result.whenComplete((text, failure) -> hedgedFor.remove(prompt, primary));
+        return result;
+    }
+
+    /**
+     * Sends the prompt to the model without blocking, through the request scheduler if there is one. Every attempt
+     * is measured as a request.
+     */
+    private <T> CompletableFuture<T> measure(String prompt, List<String> keys, int amount, Priority priority,
+                                             Supplier<CompletableFuture<T>> request) {
+        Supplier<CompletableFuture<T>> attempt = () -> {
+            long start = System.nanoTime();
+            CompletableFuture<T> response;
+            try {
+                response = request.get();
+            } catch (RuntimeException e) {
+                response = CompletableFuture.failedFuture(e);
+            }
+            return response.whenComplete((result, failure) ->
+                    metrics.request(getModelName(), keys, System.nanoTime() - start, failure != null));
+        };
+
+        begin(prompt, keys, amount);
+        RequestScheduler scheduler = requestScheduler;
+        CompletableFuture<T> response = scheduler == null
+                ? attempt.get()
+                : scheduler.submit(priority, estimateTokens(prompt), attempt);
+        return response.whenComplete((result, failure) -> end(prompt));
+    }
+
+    /**
+     * Estimates the tokens a request counts for, the same way OpenAI does for its rate limits: roughly 4 characters
+     * per token of the prompt, plus the maximum amount of completion tokens.
+     */
+    private int estimateTokens(String prompt) {
+        return estimateTokens(prompt.length()) + getMaxCompletionTokens();
+    }
+
+    /**
+     * Estimates the amount of tokens of a text, for implementations whose model doesn't report them: roughly 4
+     * characters per token.
+     */
+    protected static int estimateTokens(int characters) {
+        return characters / 4;
+    }
+
+    private List<String> parse(String text, List<String> keys) {
+        try {
+            return parseValues(text);
+        } catch (RuntimeException e) {
+            metrics.parseFailure(getModelName(), keys);
+            throw e;
+        }
+    }
+
+    private void begin(String prompt, List<String> keys, int amount) {
+        inFlight.compute(prompt, (p, request) -> {
+            if (request == null) {
+                return new InFlight(keys, amount);
+            }
+            request.count++;
+            return request;
+        });
+    }
+
+    private void end(String prompt) {
+        inFlight.computeIfPresent(prompt, (p, request) -> --request.count == 0 ? null : request);
+    }
+
+    /**
+     * @return The amount of values to ask for in the next batch for the key.
+     */
+    private int batchSize(String key) {
+        if (!adaptiveBatchSize) {
+            return amountOfItemsToGenerate;
+        }
+        return batchSizer.next(key, amountOfItemsToGenerate, maxAmountOfItemsToGenerate, getMaxCompletionTokens());
+    }
+
+    private int batchSize(List<String> keys) {
+        if (!adaptiveBatchSize) {
+            return amountOfItemsToGenerate;
+        }
+        return batchSizer.next(keys, amountOfItemsToGenerate, maxAmountOfItemsToGenerate, getMaxCompletionTokens());
+    }
+
+    private synchronized KeyBatcher getBatcher() {
+        if (batcher == null && batchWindowNanos > 0) {
+            batcher = new KeyBatcher(
+                    (keys, context, priority) -> generateBatch(keys, batchSize(keys), context, priority),
+                    getRefillExecutor(),
+                    batchWindowNanos,
+                    maxBatchKeys);
+        }
+        return batcher;
+    }
+
+    private PromptTemplate.Prompt prompt(String key, FakerContext context) {
+        return prompt(key, context.getLocale());
+    }
+
+    private PromptTemplate.Prompt prompt(String key, Locale locale) {
+        return prompts.computeIfAbsent(new PromptKey(key, locale, useFullKey),
+                k -> getPromptTemplate(key).compile(key, formatKey(key), locale.getDisplayLanguage()));
+    }
+
+    private PromptTemplate getPromptTemplate(String key) {
+        int dot = key.indexOf('.');
+        if (dot > 0) {
+            PromptTemplate template = providerPromptTemplates.get(key.substring(0, dot).toLowerCase(Locale.ROOT));
+            if (template != null) {
+                return template;
+            }
+        }
+        PromptTemplate template = promptTemplate;
+        return template == null ? getDefaultPromptTemplate() : template;
+    }
+
+    private StoreKey storeKey(String key, FakerContext context) {
+        // The amount is left out of the prompt, so changing it doesn't invalidate the values stored so far.
+        return StoreKey.of(getModelName(), context.getLocale(), key, createPrompt(key, 0, context));
+    }
+
+    private static <T> CompletableFuture<T> call(Callable<T> callable) {
+        try {
+            return CompletableFuture.completedFuture(callable.call());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private synchronized ExecutorService getRefillExecutor() {
+        if (refillExecutor == null) {
+            refillExecutor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "datafaker-llm-refill");
+                thread.setDaemon(true);
+                return thread;
+            });
+            ownsRefillExecutor = true;
+        }
+        return refillExecutor;
+    }
+
+    /**
+     * Sends the keys which are still waiting for a batch, and stops the threads the service started itself once they
+     * are done. An executor set using {@link #setRefillExecutor(ExecutorService)} is left running. The service can
+     * still be used afterwards, it starts new threads when needed.
+     */
+    @Override
+    public synchronized void close() {
+        closeBatcher();
+        if (ownsRefillExecutor) {
+            refillExecutor.shutdown();
+            refillExecutor = null;
+            ownsRefillExecutor = false;
+        }
+    }
+
+    /**
+     * Closes the batcher, so the keys which are waiting for it are sent, and its thread stops. A new batcher is created
+     * when needed.
+     */
+    private synchronized void closeBatcher() {
+        if (batcher != null) {
+            batcher.close();
+            batcher = null;
+        }
+    }
+
+    protected String formatKey(String key) {
+
+        String[] split = key.split("\\.");
+
+        var prefix = split[0].replaceAll("_", " ");
+        var postfix = split[1].replaceAll("_", " ");
+
+        if (useFullKey) {
+            return prefix + " " + splitCamelCase(postfix).replaceAll(" {2,}", " ");
+        } else {
+            return splitCamelCase(postfix).replaceAll(" {2,}", " ");
+        }
+    }
+
+    private String splitCamelCase(String s) {
+        return StringUtils.join(StringUtils.splitByCharacterTypeCamelCase(s), ' ');
+    }
+
+    public void setUseFullKey(boolean useFullKey) {
+        this.useFullKey = useFullKey;
+    }
+
+    /**
+     * Replaces the prompt which asks the model for the values of a key. The model should still answer in the format
+     * the service expects, such as a json array for Ollama, or a json object with a "values" array for OpenAI.
+     *
+     * @param promptTemplate The template, or null to use the default template.
+     */
+    public void setPromptTemplate(PromptTemplate promptTemplate) {
+        this.promptTemplate = promptTemplate;
+        prompts.clear();
+    }
+
+    /**
+     * Replaces the prompt for the keys of a single provider, such as "address", for example to give the model more
+     * context about what an address should look like.
+     *
+     * @param provider       The name of the provider, which is the part of the key before the dot.
+     * @param promptTemplate The template, or null to use the template for all providers.
+     */
+    public void setPromptTemplate(String provider, PromptTemplate promptTemplate) {
+        String name = provider.toLowerCase(Locale.ROOT);
+        if (promptTemplate == null) {
+            providerPromptTemplates.remove(name);
+        } else {
+            providerPromptTemplates.put(name, promptTemplate);
+        }
+        prompts.clear();
+    }
+
+    /**
+     * @param metrics Receives the measurements of this service, such as cache hits and the tokens used per key.
+     *                By default, the measurements are exposed using JMX, see {@link JmxLlmMetrics}.
+     *                Use {@link LlmMetrics#NONE} to disable measuring.
+     */
+    public void setMetrics(LlmMetrics metrics) {
+        this.metrics = metrics == null ? LlmMetrics.NONE : metrics;
+    }
+
+    /**
+     * Sizes batches adaptively. The first batch of a key has {@link #setAmountOfItemsToGenerate(int)} values.
+     * Keys which run out of values within a minute get batches twice as large, up to
+     * {@link #setMaxAmountOfItemsToGenerate(int)} values, while keys which are rarely used get smaller batches.
+     * When the model reports its token usage, batches are limited to what fits in its maximum amount of tokens, so
+     * answers aren't cut off.
+     */
+    public void setAdaptiveBatchSize(boolean adaptiveBatchSize) {
+        this.adaptiveBatchSize = adaptiveBatchSize;
+    }
+
+    /**
+     * @param maxAmountOfItemsToGenerate The maximum amount of values in a batch, when batches are sized adaptively.
+     */
+    public void setMaxAmountOfItemsToGenerate(int maxAmountOfItemsToGenerate) {
+        this.maxAmountOfItemsToGenerate = maxAmountOfItemsToGenerate;
+    }
+
+    /**
+     * @param requestScheduler Sends the requests to the model within its rate limits, retrying requests which were
+     *                         rejected because of them. By default, requests are sent right away, and not retried.
+     */
+    public void setRequestScheduler(RequestScheduler requestScheduler) {
+        this.requestScheduler = requestScheduler;
+    }
+
+    /**
+     * @param valueFilter Decides which generated values are used, for the keys without a filter of their own. By
+     *                    default, empty values and values longer than a few sentences are dropped.
+     */
+    public void setValueFilter(ValueFilter valueFilter) {
+        this.valueFilter = valueFilter;
+    }
+
+    /**
+     * @param key         The key to filter the values of, such as "address.zip_code".
+     * @param valueFilter Decides which generated values of the key are used, or null to use the default filter.
+     */
+    public void setValueFilter(String key, ValueFilter valueFilter) {
+        if (valueFilter == null) {
+            valueFilters.remove(key);
+        } else {
+            valueFilters.put(key, valueFilter);
+        }
+    }
+
+    /**
+     * @param deduplicate Whether to drop the values which were generated for a key before (ignoring case), and ask
+     *                    the model for new ones instead. Enabled by default.
+     */
+    public void setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+    }
+
+    /**
+     * @param latencyBudget How long a caller waits for the model when a key has no values, before the value is
+     *                      resolved from the values built into Datafaker instead, while the model keeps generating
+     *                      values in the background. Use null or {@link Duration#ZERO} to always wait for the model.
+     */
+    public void setLatencyBudget(Duration latencyBudget) {
+        this.latencyBudgetNanos = latencyBudget == null ? 0 : latencyBudget.toNanos();
+    }
+
+    /**
+     * @param failureBackoff With a latency budget, how long to use the values built into Datafaker for a key right
+     *                       away after a request for its values failed, instead of calling the model again.
+     */
+    public void setFailureBackoff(Duration failureBackoff) {
+        this.failureBackoffNanos = failureBackoff == null ? 0 : failureBackoff.toNanos();
+    }
+
+    /**
+     * @param failOnError Whether {@link #resolve(String, AbstractProvider, FakerContext)} throws an exception when
+     *                    the model failed to generate values, instead of returning null.
+     */
+    public void setFailOnError(boolean failOnError) {
+        this.failOnError = failOnError;
+    }
+
+    public void setAmountOfItemsToGenerate(int amountOfItemsToGenerate) {
+        this.amountOfItemsToGenerate = amountOfItemsToGenerate;
+    }
+
+    protected int getAmountOfItemsToGenerate() {
+        return amountOfItemsToGenerate;
+    }
+
+    /**
+     * @param refillThreshold Start generating the next batch in the background once fewer than this amount of items
+     *                        are cached for a key. Use 0 to disable background refills.
+     */
+    public void setRefillThreshold(int refillThreshold) {
+        this.refillThreshold = refillThreshold;
+    }
+
+    /**
+     * @param refillExecutor The executor used for background refills and bulk generation. By default, a cached pool
+     *                       of daemon threads is used.
+     */
+    public synchronized void setRefillExecutor(ExecutorService refillExecutor) {
+        if (ownsRefillExecutor) {
+            this.refillExecutor.shutdown();
+        }
+        this.refillExecutor = refillExecutor;
+        this.ownsRefillExecutor = false;
+    }
+
+    /**
+     * @param valueStore Where to persist generated values, so they can be reused after a restart. By default,
+     *                   values are only kept in memory.
+     */
+    public void setValueStore(ValueStore valueStore) {
+        this.valueStore = valueStore;
+    }
+
+    /**
+     * @param reuseValues Whether values are drawn with replacement, instead of being handed out only once.
+     */
+    public void setReuseValues(boolean reuseValues) {
+        this.reuseValues = reuseValues;
+    }
+
+    /**
+     * @param refreshAfterDraws When reusing values, add a fresh batch after this amount of draws for a key, or for a
+     *                          set of keys drawn as records.
+     *                          Use 0 to never refresh based on the amount of draws.
+     */
+    public void setRefreshAfterDraws(int refreshAfterDraws) {
+        this.refreshAfterDraws = refreshAfterDraws;
+    }
+
+    /**
+     * @param refreshAfter When reusing values, add a fresh batch once the last batch of a key, or of a set of keys
+     *                     drawn as records, is this old.
+     *                     Use null or {@link Duration#ZERO} to never refresh based on time.
+     */
+    public void setRefreshAfter(Duration refreshAfter) {
+        this.refreshAfterNanos = refreshAfter == null ? 0 : refreshAfter.toNanos();
+    }
+
+    /**
+     * @param bulkParallelism The maximum amount of requests sent to the model at the same time when generating
+     *                        values in bulk.
+     */
+    public void setBulkParallelism(int bulkParallelism) {
+        this.bulkParallelism = bulkParallelism;
+    }
+
+    /**
+     * @param batchWindow How long to wait for other keys without values, so they can be generated using a single
+     *                    request to the model. Use null or {@link Duration#ZERO} to send a request per key right away.
+     */
+    public synchronized void setBatchWindow(Duration batchWindow) {
+        this.batchWindowNanos = batchWindow == null ? 0 : batchWindow.toNanos();
+        closeBatcher();
+    }
+
+    /**
+     * @param maxBatchKeys The maximum amount of keys generated using a single request to the model.
+     */
+    public synchronized void setMaxBatchKeys(int maxBatchKeys) {
+        this.maxBatchKeys = maxBatchKeys;
+        closeBatcher();
+    }
+
+    /**
+     * @param streaming Whether to stream the answer of the model, so the first value can be used after a few tokens
+     *                  instead of after the whole batch has been generated.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * @param batchLocales The locales whose values are generated together, using a single request per key. When one
+     *                     of them needs values, the others which have none yet get theirs as well. Use an empty list to
+     *                     generate values per locale.
+     */
+    public void setBatchLocales(List<Locale> batchLocales) {
+        this.batchLocales = batchLocales == null ? List.of() : List.copyOf(batchLocales);
+    }
+
+    /**
+     * @param poolStorage Creates the storage of every pool, such as {@code () -> PoolStorage.arena(false)} to keep
+     *                    large pools in a small heap. Only applies to keys which weren't used yet, so it should be
+     *                    set before generating values. Defaults to {@link PoolStorage#list()}.
+     */
+    public void setPoolStorage(Supplier<PoolStorage> poolStorage) {
+        pool.setStorage(poolStorage == null ? PoolStorage::list : poolStorage);
+    }
+
+    /**
+     * @param warmUpExecutor The executor pools are filled on during a warm-up, one task per key, which mostly waits for
+     *                       the model. On Java 21 or later, {@code Executors.newVirtualThreadPerTaskExecutor()} fits
+     *                       well. Use null to fill the pools on the refill executor.
+     */
+    public void setWarmUpExecutor(Executor warmUpExecutor) {
+        this.warmUpExecutor = warmUpExecutor;
+    }
+
+    /**
+     * Hedges requests for keys which have no values yet: when the model takes longer than the policy allows, the
+     * prompt is also sent to the other service, such as the same model at another endpoint, or a cheaper model. The
+     * first answer is used, and the other request is cancelled. Refills aren't hedged, as no one is waiting for them.
+     * <p>
+     * Hedged requests don't go through the request scheduler, so the other service shouldn't share its rate limits.
+     *
+     * @param policy The policy which decides when to hedge, or null to not hedge requests, which is the default.
+     * @param hedge  The service the duplicate requests are sent to. The prompt is created, the answer is parsed, and
+     *               the tokens are recorded by this service, so the other service has to be of the same type.
+     * @throws IllegalArgumentException If the other service is of another type.
+     */
+    public void setHedging(HedgingPolicy policy, LlmFakeValuesService hedge) {
+        if (policy != null && Objects.requireNonNull(hedge).getClass() != getClass()) {
+            throw new IllegalArgumentException("Requests can only be hedged to a service of the same type, "
+                    + getClass().getSimpleName() + ", but was " + hedge.getClass().getSimpleName());
+        }
+        this.hedger = policy == null ? null : new Hedger(policy, prompt -> hedge.completeHedged(prompt, this));
+    }
+
+    private record ExpressionKey(String expression, Class<?> current, Locale locale) {
+    }
+
+    private record PromptKey(String key, Locale locale, boolean useFullKey) {
+    }
+
+    /**
+     * The keys of a prompt, and how many requests with that prompt are waiting for the model.
+     */
+    private static final class InFlight {
+        private final List<String> keys;
+        private final int amount;
+        private int count = 1;
+        private volatile boolean truncated;
+
+        private InFlight(List<String> keys, int amount) {
+            this.keys = keys;
+            this.amount = amount;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package net.datafaker.service.llm;
+
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * Creates services by name, so tools such as the Maven plugin can use any model which is on the classpath, without
+ * depending on it. Implementations are found using {@link ServiceLoader}, and are registered in
+ * {@code META-INF/services/net.datafaker.service.llm.LlmFakeValuesServiceFactory}.
+ */
+public interface LlmFakeValuesServiceFactory {
+
+    /**
+     * @return The name the service is known by, such as "openai".
+     */
+    String getName();
+
+    /**
+     * @param properties The configuration of the service, such as "model" and "endpoint". Which properties are
+     *                   supported depends on the service, properties which aren't given get their default value.
+     */
+    LlmFakeValuesService create(Map<String, String> properties);
+
+    /**
+     * @return The factory with the name, found using the class loader.
+     * @throws IllegalArgumentException If there is no factory with the name.
+     */
+    static LlmFakeValuesServiceFactory find(String name, ClassLoader classLoader) {
+        for (LlmFakeValuesServiceFactory factory : ServiceLoader.load(LlmFakeValuesServiceFactory.class, classLoader)) {
+            if (factory.getName().equalsIgnoreCase(name)) {
+                return factory;
+            }
+        }
+        throw new IllegalArgumentException("No service named " + name + " found, is its module on the classpath?");
+    }
+}
@@ -0,0 +1,93 @@
+package net.datafaker.service.llm;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Receives the measurements of a service, such as how often values were cached, and how many tokens the model
+ * used for which keys. All methods do nothing by default, so implementations only need to override what they use.
+ * <p>
+ * Methods are called from the threads which resolve values and which receive the answers of the model, so
+ * implementations must be thread-safe, and should be cheap: {@link #hit(String, String)} is called on every
+ * cached draw.
+ *
+ * @see JmxLlmMetrics
+ */
+public interface LlmMetrics {
+
+    /**
+     * Ignores all measurements.
+     */
+    LlmMetrics NONE = new LlmMetrics() {
+    };
+
+    /**
+     * A value was drawn from the values cached for the key.
+     */
+    default void hit(String model, String key) {
+    }
+
+    /**
+     * No values were cached for the key, so the caller had to wait for the model.
+     */
+    default void miss(String model, String key) {
+    }
+
+    /**
+     * The model couldn't answer within the latency budget, so the value of the key was resolved from the values
+     * built into Datafaker instead.
+     */
+    default void fallback(String model, String key) {
+    }
+
+    /**
+     * The amount of values cached for the key in the locale, reported after every draw and after prefetching.
+     */
+    default void poolDepth(String model, Locale locale, String key, int depth) {
+    }
+
+    /**
+     * The model answered a request for values of the keys, or failed to.
+     *
+     * @param latencyNanos The time between sending the prompt and receiving the whole answer.
+     */
+    default void request(String model, List<String> keys, long latencyNanos, boolean failed) {
+    }
+
+    /**
+     * The model reported the tokens it used for a request for values of the keys. Not every model reports tokens
+     * for every request, streamed completions of OpenAI for example don't.
+     */
+    default void tokens(String model, List<String> keys, int promptTokens, int completionTokens) {
+    }
+
+    /**
+     * A batch of values the model generated for the key was cleaned up, before it was cached.
+     *
+     * @param generated  The amount of values the model generated.
+     * @param duplicates The amount of values which were generated before.
+     * @param invalid    The amount of values which didn't pass the {@link ValueFilter} of the key.
+     */
+    default void filtered(String model, String key, int generated, int duplicates, int invalid) {
+    }
+
+    /**
+     * The model ran out of tokens before it finished its answer for a request for values of the keys.
+     */
+    default void truncation(String model, List<String> keys) {
+    }
+
+    /**
+     * A request for values of the keys took long, so a duplicate was sent to another service.
+     *
+     * @param won Whether the duplicate answered first.
+     */
+    default void hedged(String model, List<String> keys, boolean won) {
+    }
+
+    /**
+     * The answer of the model for a request for values of the keys couldn't be parsed.
+     */
+    default void parseFailure(String model, List<String> keys) {
+    }
+}
@@ -0,0 +1,180 @@
+package net.datafaker.service.llm;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters of a key or a model. Counting doesn't allocate, and doesn't contend between threads.
+ */
+class LlmStats implements LlmStatsMXBean {
+
+    private static final long[] BUCKETS_MILLIS = {10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 30_000};
+
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder fallbacks = new LongAdder();
+    final LongAdder requests = new LongAdder();
+    final LongAdder failedRequests = new LongAdder();
+    final LongAdder truncations = new LongAdder();
+    private final LongAdder hedgedRequests = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    final LongAdder parseFailures = new LongAdder();
+    private final LongAdder generatedValues = new LongAdder();
+    private final LongAdder duplicateValues = new LongAdder();
+    private final LongAdder invalidValues = new LongAdder();
+    final LongAdder promptTokens = new LongAdder();
+    final LongAdder completionTokens = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LongAdder[] latencies = new LongAdder[BUCKETS_MILLIS.length + 1];
+
+    private final LongSupplier poolDepth;
+
+    LlmStats(LongSupplier poolDepth) {
+        this.poolDepth = poolDepth;
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LongAdder();
+        }
+    }
+
+    void request(long nanos, boolean failed) {
+        requests.increment();
+        if (failed) {
+            failedRequests.increment();
+        }
+        latencyNanos.add(nanos);
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = 0;
+        while (bucket < BUCKETS_MILLIS.length && millis > BUCKETS_MILLIS[bucket]) {
+            bucket++;
+        }
+        latencies[bucket].increment();
+    }
+
+    void hedged(boolean won) {
+        hedgedRequests.increment();
+        if (won) {
+            hedgeWins.increment();
+        }
+    }
+
+    void filtered(int generated, int duplicates, int invalid) {
+        generatedValues.add(generated);
+        duplicateValues.add(duplicates);
+        invalidValues.add(invalid);
+    }
+
+    @Override
+    public long getHedgedRequests() {
+        return hedgedRequests.sum();
+    }
+
+    @Override
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public long getPoolDepth() {
+        return poolDepth.getAsLong();
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    @Override
+    public long getFailedRequests() {
+        return failedRequests.sum();
+    }
+
+    @Override
+    public long getTruncations() {
+        return truncations.sum();
+    }
+
+    @Override
+    public long getParseFailures() {
+        return parseFailures.sum();
+    }
+
+    @Override
+    public long getGeneratedValues() {
+        return generatedValues.sum();
+    }
+
+    @Override
+    public long getDuplicateValues() {
+        return duplicateValues.sum();
+    }
+
+    @Override
+    public long getInvalidValues() {
+        return invalidValues.sum();
+    }
+
+    @Override
+    public double getDuplicateRate() {
+        long generated = getGeneratedValues();
+        return generated == 0 ? 0 : (double) getDuplicateValues() / generated;
+    }
+
+    @Override
+    public long getPromptTokens() {
+        return promptTokens.sum();
+    }
+
+    @Override
+    public long getCompletionTokens() {
+        return completionTokens.sum();
+    }
+
+    @Override
+    public long getTotalTokens() {
+        return getPromptTokens() + getCompletionTokens();
+    }
+
+    @Override
+    public double getMeanLatencyMillis() {
+        long requests = getRequests();
+        return requests == 0 ? 0 : latencyNanos.sum() / 1_000_000.0 / requests;
+    }
+
+    @Override
+    public long[] getLatencyBucketsMillis() {
+        return BUCKETS_MILLIS.clone();
+    }
+
+    @Override
+    public long[] getLatencyHistogram() {
+        long[] histogram = new long[latencies.length];
+        for (int i = 0; i < latencies.length; i++) {
+            histogram[i] = latencies[i].sum();
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,87 @@
+package net.datafaker.service.llm;
+
+/**
+ * The statistics of a key or model, as exposed by {@link JmxLlmMetrics}.
+ */
+public interface LlmStatsMXBean {
+
+    long getHits();
+
+    long getMisses();
+
+    /**
+     * @return The amount of misses which were resolved from the values built into Datafaker, because the model
+     * didn't answer within the latency budget.
+     */
+    long getFallbacks();
+
+    /**
+     * @return The fraction of draws which were served from the cache.
+     */
+    double getHitRatio();
+
+    /**
+     * @return The amount of values cached. For a model, the total of all of its keys.
+     */
+    long getPoolDepth();
+
+    long getRequests();
+
+    long getFailedRequests();
+
+    /**
+     * @return The amount of answers which were cut off, because the model reached its maximum amount of tokens.
+     */
+    long getTruncations();
+
+    /**
+     * @return The amount of requests which took long, so a duplicate was sent to another service.
+     */
+    long getHedgedRequests();
+
+    /**
+     * @return The amount of hedged requests for which the duplicate answered first.
+     */
+    long getHedgeWins();
+
+    long getParseFailures();
+
+    /**
+     * @return The amount of values the model generated, including the ones which were dropped.
+     */
+    long getGeneratedValues();
+
+    /**
+     * @return The amount of generated values which were dropped, because they were generated before.
+     */
+    long getDuplicateValues();
+
+    /**
+     * @return The amount of generated values which were dropped, because they didn't pass the {@link ValueFilter}.
+     */
+    long getInvalidValues();
+
+    /**
+     * @return The fraction of generated values which were dropped, because they were generated before.
+     */
+    double getDuplicateRate();
+
+    long getPromptTokens();
+
+    long getCompletionTokens();
+
+    long getTotalTokens();
+
+    double getMeanLatencyMillis();
+
+    /**
+     * @return The upper bounds of the latency histogram buckets, the last bucket has no upper bound.
+     */
+    long[] getLatencyBucketsMillis();
+
+    /**
+     * @return The amount of requests per bucket of {@link #getLatencyBucketsMillis()}, plus one for the requests
+     * which took longer than the last bound.
+     */
+    long[] getLatencyHistogram();
+}
@@ -0,0 +1,69 @@
+package net.datafaker.service.llm;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * The model answered a request with an error status. Requests which failed because of rate limiting (429) or an
+ * error of the server (5xx) can be retried, see {@link RequestScheduler}.
+ */
+public class ModelRequestException extends IOException {
+
+    private final int statusCode;
+    private final Duration retryAfter;
+
+    public ModelRequestException(String message, int statusCode, Duration retryAfter) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Creates the exception for a response with an error status, using its Retry-After header if it has one.
+     */
+    public static ModelRequestException of(HttpResponse<?> response, String body) {
+        Duration retryAfter = response.headers().firstValue("Retry-After")
+                .map(ModelRequestException::parseRetryAfter)
+                .orElse(null);
+        return new ModelRequestException("The model answered with status " + response.statusCode() + ": " + body,
+                response.statusCode(), retryAfter);
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return How long the server asked to wait before trying again, or null if it didn't say.
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * @return Whether the request might succeed when it's sent again.
+     */
+    public boolean isRetryable() {
+        return statusCode == 429 || statusCode >= 500;
+    }
+
+    /**
+     * Retry-After is either an amount of seconds, or a date.
+     */
+    private static Duration parseRetryAfter(String value) {
+        try {
+            return Duration.ofSeconds(Long.parseLong(value.strip()));
+        } catch (NumberFormatException e) {
+            try {
+                Duration until = Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(value.strip(), DateTimeFormatter.RFC_1123_DATE_TIME));
+                return until.isNegative() ? Duration.ZERO : until;
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package net.datafaker.service.llm;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import net.datafaker.service.FakeValuesService;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * The cached values of all locales and keys at one point in time.
+ * <p>
+ * Loading a snapshot into a service restores its values in the same order, so drawing with the same seed gives the
+ * same values, without calling the model. Snapshots are written as json, with the values per language tag and key,
+ * sorted by language tag, key and value, so the same values always give the same file.
+ * <p>
+ * Snapshots can also be written as the YAML files Datafaker itself uses, so the generated values can be used by a
+ * plain {@code Faker} without any model, see {@link #writeYaml(Path)}.
+ */
+public final class PoolSnapshot {
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+    private static final Type VALUES_TYPE = new TypeToken<TreeMap<String, TreeMap<String, List<String>>>>() {}.getType();
+
+    /**
+     * The values per language tag, and per key within a language.
+     */
+    private final Map<String, Map<String, List<String>>> values;
+
+    /**
+     * @param values The values per locale, and per key within a locale.
+     */
+    public PoolSnapshot(Map<Locale, Map<String, List<String>>> values) {
+        this(byLanguageTag(values));
+    }
+
+    private PoolSnapshot(TreeMap<String, TreeMap<String, List<String>>> values) {
+        Map<String, Map<String, List<String>>> copy = new TreeMap<>();
+        values.forEach((languageTag, keys) -> {
+            Map<String, List<String>> keysCopy = new TreeMap<>();
+            keys.forEach((key, keyValues) -> keysCopy.put(key, List.copyOf(keyValues)));
+            copy.put(languageTag, Collections.unmodifiableMap(keysCopy));
+        });
+        this.values = Collections.unmodifiableMap(copy);
+    }
+
+    private static TreeMap<String, TreeMap<String, List<String>>> byLanguageTag(Map<Locale, Map<String, List<String>>> values) {
+        TreeMap<String, TreeMap<String, List<String>>> tagged = new TreeMap<>();
+        values.forEach((locale, keys) -> tagged.put(locale.toLanguageTag(), new TreeMap<>(keys)));
+        return tagged;
+    }
+
+    /**
+     * Reads a snapshot which was written using {@link #write(Path)}.
+     */
+    public static PoolSnapshot read(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            TreeMap<String, TreeMap<String, List<String>>> values = GSON.fromJson(reader, VALUES_TYPE);
+            return new PoolSnapshot(values == null ? new TreeMap<>() : values);
+        }
+    }
+
+    public void write(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            GSON.toJson(values, writer);
+        }
+    }
+
+    /**
+     * Writes the values as the YAML resources Datafaker loads its values from, such as "en/name.yml" or "de.yml". Every
+     * file is a copy of the built-in file, in which the keys of the snapshot have the generated values. With the
+     * directory on the classpath before Datafaker itself, such as in the test resources, a plain {@code Faker} uses the
+     * generated values without calling any model. Values which occur more than once are written once.
+     */
+    public void writeYaml(Path directory) throws IOException {
+        ClassLoader classLoader = FakeValuesService.class.getClassLoader();
+        Map<String, Map<String, Object>> files = new TreeMap<>();
+        for (Map.Entry<String, Map<String, List<String>>> locale : values.entrySet()) {
+            for (Map.Entry<String, List<String>> key : locale.getValue().entrySet()) {
+                // Keys such as "name.first_name" are nested: faker > name > first_name
+                String[] path = key.getKey().split("\\.");
+                String file = yamlFile(Locale.forLanguageTag(locale.getKey()), path[0], classLoader);
+                Map<String, Object> content = files.computeIfAbsent(file, f -> readYaml(f, classLoader));
+                put(faker(content), path, List.copyOf(new LinkedHashSet<>(key.getValue())));
+            }
+        }
+
+        DumperOptions options = new DumperOptions();
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        Yaml yaml = new Yaml(options);
+        for (Map.Entry<String, Map<String, Object>> file : files.entrySet()) {
+            Path target = directory.resolve(file.getKey());
+            Files.createDirectories(target.getParent());
+            try (Writer writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+                yaml.dump(file.getValue(), writer);
+            }
+        }
+    }
+
+    /**
+     * @return The resource Datafaker loads the values of the provider from: English has a file per provider, such as
+     * "en/name.yml", other locales have a single file, such as "de.yml" or "de-CH.yml".
+     */
+    private static String yamlFile(Locale locale, String provider, ClassLoader classLoader) {
+        String perProvider = locale.getLanguage() + "/" + provider + ".yml";
+        if (locale.getCountry().isEmpty() && classLoader.getResource(perProvider) != null) {
+            return perProvider;
+        }
+        return (locale.getCountry().isEmpty() ? locale.getLanguage() : locale.getLanguage() + "-" + locale.getCountry()) + ".yml";
+    }
+
+    /**
+     * @return The content of the built-in file, or a file without any values if Datafaker has no such file.
+     */
+    private static Map<String, Object> readYaml(String file, ClassLoader classLoader) {
+        Map<String, Object> content = null;
+        try (InputStream stream = classLoader.getResourceAsStream(file)) {
+            if (stream != null) {
+                content = new Yaml().load(stream);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (content == null || content.size() != 1) {
+            // The locale is the only field, such as "en" or "de-CH"
+            String locale = file.substring(0, file.indexOf(file.contains("/") ? '/' : '.'));
+            content = new LinkedHashMap<>();
+            content.put(locale, new LinkedHashMap<>(Map.of("faker", new LinkedHashMap<>())));
+        }
+        return content;
+    }
+
+    /**
+     * @return The values of the file, which are in the "faker" field of the locale.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> faker(Map<String, Object> content) {
+        Map<String, Object> locale = (Map<String, Object>) content.values().iterator().next();
+        return (Map<String, Object>) locale.computeIfAbsent("faker", f -> new LinkedHashMap<>());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void put(Map<String, Object> map, String[] path, List<String> values) {
+        for (int i = 0; i < path.length - 1; i++) {
+            map = (Map<String, Object>) map.computeIfAbsent(path[i], p -> new LinkedHashMap<>());
+        }
+        map.put(path[path.length - 1], values);
+    }
+
+    public Set<Locale> getLocales() {
+        return values.keySet().stream().map(Locale::forLanguageTag).collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * @return The keys which have values for the locale.
+     */
+    public Set<String> getKeys(Locale locale) {
+        return values.getOrDefault(locale.toLanguageTag(), Map.of()).keySet();
+    }
+
+    /**
+     * @return The values of the key for the locale, or an empty list if the snapshot has none.
+     */
+    public List<String> getValues(Locale locale, String key) {
+        return values.getOrDefault(locale.toLanguageTag(), Map.of()).getOrDefault(key, List.of());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PoolSnapshot other && values.equals(other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return values.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "PoolSnapshot" + values.keySet();
+    }
+}
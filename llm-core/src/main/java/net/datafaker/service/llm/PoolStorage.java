@@ -0,0 +1,43 @@
+package net.datafaker.service.llm;
+
+/**
+ * Holds the values of a single pool. Values are addressed by index, and their order doesn't matter: removing a value
+ * may move another value into its place, so draws stay constant time.
+ * <p>
+ * Implementations don't need to be thread-safe, the pool only calls them while holding its lock.
+ *
+ * @see LlmFakeValuesService#setPoolStorage(java.util.function.Supplier)
+ */
+public interface PoolStorage {
+
+    /**
+     * @return Storage which keeps every value as a {@code String}, so drawing doesn't allocate. This is the default.
+     */
+    static PoolStorage list() {
+        return new ListPoolStorage();
+    }
+
+    /**
+     * @return Storage which keeps all values as UTF-8 bytes in a single buffer, which takes far less memory for large
+     * pools, but creates a {@code String} for every value drawn.
+     * @param direct Whether to keep the buffer outside of the heap.
+     */
+    static PoolStorage arena(boolean direct) {
+        return new ArenaPoolStorage(direct);
+    }
+
+    int size();
+
+    String get(int index);
+
+    /**
+     * Removes the value, replacing it by the last value.
+     *
+     * @return The removed value.
+     */
+    String remove(int index);
+
+    void add(String value);
+
+    void clear();
+}
@@ -0,0 +1,147 @@
+package net.datafaker.service.llm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The text of the prompt which asks a model for a batch of values of a single key. The template can contain the
+ * following placeholders:
+ * <ul>
+ *     <li>{@value #AMOUNT}: the amount of values to generate</li>
+ *     <li>{@value #LANGUAGE}: the display language of the locale, such as English</li>
+ *     <li>{@value #KEY}: the key in words, such as "first name"</li>
+ *     <li>{@value #RAW_KEY}: the key as Datafaker knows it, such as "name.first_name"</li>
+ * </ul>
+ * The template is parsed once. For every combination of key and locale, the placeholders other than the amount
+ * are filled in once as well, so creating a prompt comes down to appending the amount.
+ */
+public final class PromptTemplate {
+
+    public static final String AMOUNT = "{amount}";
+    public static final String LANGUAGE = "{language}";
+    public static final String KEY = "{key}";
+    public static final String RAW_KEY = "{rawKey}";
+
+    private static final String[] PLACEHOLDERS = {AMOUNT, LANGUAGE, KEY, RAW_KEY};
+
+    private final String template;
+
+    /**
+     * The text around the placeholders, and the placeholders themselves, alternating and starting with text.
+     */
+    private final List<String> segments = new ArrayList<>();
+
+    private PromptTemplate(String template) {
+        this.template = template;
+
+        int start = 0;
+        int index = 0;
+        while (index < template.length()) {
+            String placeholder = placeholderAt(template, index);
+            if (placeholder == null) {
+                index++;
+            } else {
+                segments.add(template.substring(start, index));
+                segments.add(placeholder);
+                index += placeholder.length();
+                start = index;
+            }
+        }
+        segments.add(template.substring(start));
+    }
+
+    public static PromptTemplate of(String template) {
+        return new PromptTemplate(template);
+    }
+
+    /**
+     * Fills in all placeholders, except for the amount.
+     */
+    Prompt compile(String rawKey, String key, String language) {
+        List<String> parts = new ArrayList<>();
+        StringBuilder part = new StringBuilder(segments.get(0));
+        for (int i = 1; i < segments.size(); i += 2) {
+            switch (segments.get(i)) {
+                case AMOUNT -> {
+                    parts.add(part.toString());
+                    part.setLength(0);
+                }
+                case LANGUAGE -> part.append(language);
+                case KEY -> part.append(key);
+                default -> part.append(rawKey);
+            }
+            part.append(segments.get(i + 1));
+        }
+        parts.add(part.toString());
+        return new Prompt(key, language, parts.toArray(String[]::new));
+    }
+
+    private static String placeholderAt(String template, int index) {
+        if (template.charAt(index) != '{') {
+            return null;
+        }
+        for (String placeholder : PLACEHOLDERS) {
+            if (template.startsWith(placeholder, index)) {
+                return placeholder;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+
+    /**
+     * A template with everything but the amount filled in.
+     */
+    static final class Prompt {
+
+        private final String key;
+        private final String language;
+
+        /**
+         * The text between the occurrences of the amount.
+         */
+        private final String[] parts;
+        private final int length;
+
+        private Prompt(String key, String language, String[] parts) {
+            this.key = key;
+            this.language = language;
+            this.parts = parts;
+            int total = 0;
+            for (String part : parts) {
+                total += part.length();
+            }
+            this.length = total;
+        }
+
+        /**
+         * @return The key in words, such as "first name".
+         */
+        String key() {
+            return key;
+        }
+
+        /**
+         * @return The display language of the locale, such as "English".
+         */
+        String language() {
+            return language;
+        }
+
+        String render(int amount) {
+            if (parts.length == 1) {
+                return parts[0];
+            }
+            StringBuilder prompt = new StringBuilder(length + 10 * (parts.length - 1));
+            prompt.append(parts[0]);
+            for (int i = 1; i < parts.length; i++) {
+                prompt.append(amount).append(parts[i]);
+            }
+            return prompt.toString();
+        }
+    }
+}
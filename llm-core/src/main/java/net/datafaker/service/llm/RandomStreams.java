@@ -0,0 +1,44 @@
+package net.datafaker.service.llm;
+
+import net.datafaker.service.FakerContext;
+import net.datafaker.service.RandomService;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * Independent, reproducible random streams derived from a single seed.
+ * <p>
+ * Threads which share a single random source draw in whatever order they're scheduled, so their values differ
+ * between runs. Giving every worker its own stream instead, stream {@code n} always yields the same numbers for the
+ * same seed, no matter how many other streams are in use.
+ */
+public final class RandomStreams {
+
+    /**
+     * The increment of {@link SplittableRandom}, which spreads the seeds of consecutive streams.
+     */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final long seed;
+
+    public RandomStreams(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @param index The number of the stream, such as the number of the worker which uses it.
+     * @return A new random source, which yields the same numbers every time it's created for this seed and index.
+     */
+    public Random stream(int index) {
+        return new Random(new SplittableRandom(seed + GOLDEN_GAMMA * index).nextLong());
+    }
+
+    /**
+     * @return A context which draws its random numbers from {@link #stream(int) stream} {@code index}.
+     */
+    public FakerContext context(Locale locale, int index) {
+        return new FakerContext(locale, new RandomService(stream(index)));
+    }
+}
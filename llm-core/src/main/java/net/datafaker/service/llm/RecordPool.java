@@ -0,0 +1,191 @@
+package net.datafaker.service.llm;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Thread-safe pool of generated records, all with the same keys.
+ * <p>
+ * Records are stored column by column: a list of values per key, in which the values at the same index form a
+ * record. Drawing a record picks one index, and takes the value at that index from every column. Loading is
+ * single-flight, like in {@link ValuePool.Values}: while records are being generated, other callers wait on that same
+ * load.
+ */
+final class RecordPool {
+
+    /**
+     * Generates records for a pool.
+     */
+    interface Loader {
+        CompletableFuture<List<Map<String, String>>> load();
+    }
+
+    private final List<String> keys;
+
+    private final List<List<String>> columns;
+
+    /**
+     * The amount of records, which can be read without locking.
+     */
+    private volatile int size;
+
+    /**
+     * Whether a load is in flight.
+     */
+    private boolean loading;
+
+    /**
+     * While loading, the future the callers waiting for records get. It completes with the amount of records the load
+     * added.
+     */
+    private CompletableFuture<Integer> available;
+
+    private int drawsSinceLoad;
+    private long lastLoadNanos = System.nanoTime();
+
+    RecordPool(List<String> keys) {
+        this.keys = List.copyOf(keys);
+        this.columns = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            columns.add(new ArrayList<>());
+        }
+    }
+
+    List<String> keys() {
+        return keys;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Draws in constant time, like {@link ValuePool.Values#draw(Random, boolean)}: a consumed record is replaced by
+     * the last record, in every column.
+     *
+     * @return A random record, with the values in the order of the keys, or null if the pool is empty.
+     */
+    synchronized Map<String, String> draw(Random random, boolean consume) {
+        int size = this.size;
+        if (size == 0) {
+            return null;
+        }
+        drawsSinceLoad++;
+        int index = random.nextInt(size);
+        Map<String, String> record = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            List<String> column = columns.get(i);
+            record.put(keys.get(i), column.get(index));
+            if (consume) {
+                String last = column.remove(size - 1);
+                if (index < size - 1) {
+                    column.set(index, last);
+                }
+            }
+        }
+        if (consume) {
+            this.size = size - 1;
+        }
+        return record;
+    }
+
+    /**
+     * @see ValuePool.Values#isStale(int, long)
+     */
+    synchronized boolean isStale(int maxDraws, long maxAgeNanos) {
+        return (maxDraws > 0 && drawsSinceLoad >= maxDraws)
+                || (maxAgeNanos > 0 && System.nanoTime() - lastLoadNanos >= maxAgeNanos);
+    }
+
+    /**
+     * Adds the records which have a value for every key, and skips the others.
+     *
+     * @return The amount of records added.
+     */
+    synchronized int add(List<Map<String, String>> records) {
+        int added = 0;
+        for (Map<String, String> record : records) {
+            if (!record.keySet().containsAll(keys)) {
+                continue;
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                columns.get(i).add(record.get(keys.get(i)));
+            }
+            added++;
+        }
+        size += added;
+        if (added > 0) {
+            drawsSinceLoad = 0;
+            lastLoadNanos = System.nanoTime();
+        }
+        return added;
+    }
+
+    /**
+     * Makes sure there are records available. When the pool is empty, and nobody is loading already, the loader is
+     * started.
+     *
+     * @return A future which completes once records are available, with the amount of records added. When it completes
+     * with 0, the loader didn't come up with any records.
+     */
+    CompletableFuture<Integer> awaitRecords(Loader loader) {
+        CompletableFuture<Integer> future;
+        synchronized (this) {
+            if (size > 0) {
+                return CompletableFuture.completedFuture(size);
+            }
+            if (loading) {
+                return available;
+            }
+            loading = true;
+            future = available = new CompletableFuture<>();
+        }
+        load(loader);
+        return future;
+    }
+
+    /**
+     * Starts loading more records, unless a load is in flight already.
+     */
+    void refill(Loader loader) {
+        synchronized (this) {
+            if (loading) {
+                return;
+            }
+            loading = true;
+            available = new CompletableFuture<>();
+        }
+        load(loader);
+    }
+
+    private void load(Loader loader) {
+        CompletableFuture<List<Map<String, String>>> generated;
+        try {
+            generated = loader.load();
+        } catch (Throwable t) {
+            generated = CompletableFuture.failedFuture(t);
+        }
+
+        generated.whenComplete((result, failure) -> {
+            CompletableFuture<Integer> waiting;
+            int added = 0;
+            synchronized (this) {
+                if (failure == null && result != null) {
+                    added = add(result);
+                }
+                waiting = available;
+                available = null;
+                loading = false;
+            }
+            if (failure != null) {
+                waiting.completeExceptionally(failure);
+            } else {
+                waiting.complete(added);
+            }
+        });
+    }
+}
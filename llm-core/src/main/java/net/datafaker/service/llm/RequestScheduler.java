@@ -0,0 +1,260 @@
+package net.datafaker.service.llm;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Sends requests to a model within its rate limits, and retries the requests which were rejected because of them.
+ * <ul>
+ *     <li>Requests per minute and tokens per minute are limited using token buckets, which allow a burst of a
+ *     minute's worth of requests.</li>
+ *     <li>At most a fixed amount of requests are in flight at the same time.</li>
+ *     <li>Requests which failed with a status of 429 or 5xx are retried with exponential backoff and jitter. When
+ *     the model sent a Retry-After header, no request is sent before that time has passed.</li>
+ *     <li>Waiting requests are sent in order of priority, so a caller waiting for a value goes ahead of a refill
+ *     in the background.</li>
+ * </ul>
+ * A scheduler can be shared by multiple services which use the same account.
+ */
+public class RequestScheduler {
+
+    public enum Priority {
+        /**
+         * A caller is waiting for the answer.
+         */
+        FOREGROUND,
+        /**
+         * The answer fills a cache in the background.
+         */
+        BACKGROUND
+    }
+
+    private final TokenBucket requests;
+    private final TokenBucket tokens;
+    private final int maxConcurrency;
+    private final int maxRetries;
+    private final long baseDelayNanos;
+    private final long maxDelayNanos;
+
+    private final PriorityQueue<Task<?>> queue = new PriorityQueue<>();
+    private long sequence;
+    private int running;
+
+    /**
+     * No request is sent before this time, because the model asked to wait.
+     */
+    private long pausedUntilNanos;
+
+    /**
+     * When the dispatcher wakes up to send the next waiting request, or 0 if it isn't asleep.
+     */
+    private long wakeUpNanos;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "datafaker-llm-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Creates a scheduler which retries a request up to 3 times, waiting between half a second and 30 seconds.
+     *
+     * @param requestsPerMinute The maximum amount of requests per minute, or 0 for no limit.
+     * @param tokensPerMinute   The maximum amount of tokens per minute, or 0 for no limit.
+     * @param maxConcurrency    The maximum amount of requests in flight.
+     */
+    public RequestScheduler(int requestsPerMinute, int tokensPerMinute, int maxConcurrency) {
+        this(requestsPerMinute, tokensPerMinute, maxConcurrency, 3, Duration.ofMillis(500), Duration.ofSeconds(30));
+    }
+
+    /**
+     * @param requestsPerMinute The maximum amount of requests per minute, or 0 for no limit.
+     * @param tokensPerMinute   The maximum amount of tokens per minute, or 0 for no limit.
+     * @param maxConcurrency    The maximum amount of requests in flight.
+     * @param maxRetries        How often a request is retried, after which its failure is passed on.
+     * @param baseDelay         The delay before the first retry, which doubles for every next retry.
+     * @param maxDelay          The maximum delay between retries, unless the model asks to wait longer.
+     */
+    public RequestScheduler(int requestsPerMinute, int tokensPerMinute, int maxConcurrency, int maxRetries,
+                            Duration baseDelay, Duration maxDelay) {
+        this.requests = requestsPerMinute > 0 ? new TokenBucket(requestsPerMinute) : null;
+        this.tokens = tokensPerMinute > 0 ? new TokenBucket(tokensPerMinute) : null;
+        this.maxConcurrency = maxConcurrency;
+        this.maxRetries = maxRetries;
+        this.baseDelayNanos = baseDelay.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+    }
+
+    /**
+     * @param priority        Decides which waiting request is sent first.
+     * @param estimatedTokens The amount of tokens the request counts for, such as its prompt and maximum amount of
+     *                        completion tokens.
+     * @param request         Sends the request, called again for every retry.
+     * @return A future which completes with the answer, or with the failure of the last attempt.
+     */
+    public <T> CompletableFuture<T> submit(Priority priority, int estimatedTokens, Supplier<CompletableFuture<T>> request) {
+        Task<T> task;
+        synchronized (this) {
+            task = new Task<>(priority, sequence++, estimatedTokens, request);
+        }
+        enqueue(task);
+        return task.result;
+    }
+
+    private void enqueue(Task<?> task) {
+        synchronized (this) {
+            queue.add(task);
+        }
+        dispatch();
+    }
+
+    private void dispatch() {
+        List<Task<?>> start = new ArrayList<>();
+        synchronized (this) {
+            while (running < maxConcurrency && !queue.isEmpty()) {
+                Task<?> next = queue.peek();
+                long now = System.nanoTime();
+                long wait = Math.max(pausedUntilNanos - now,
+                        Math.max(nanosUntil(requests, 1, now), nanosUntil(tokens, next.tokens, now)));
+                if (wait > 0) {
+                    wakeUpIn(now, wait);
+                    break;
+                }
+                queue.poll();
+                take(requests, 1);
+                take(tokens, next.tokens);
+                running++;
+                start.add(next);
+            }
+        }
+        start.forEach(this::start);
+    }
+
+    private <T> void start(Task<T> task) {
+        task.attempts++;
+        CompletableFuture<T> response;
+        try {
+            response = task.request.get();
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+
+        response.whenComplete((result, failure) -> {
+            synchronized (this) {
+                running--;
+            }
+            if (failure == null) {
+                task.result.complete(result);
+            } else {
+                Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+                if (cause instanceof ModelRequestException e && e.isRetryable() && task.attempts <= maxRetries) {
+                    retry(task, e);
+                } else {
+                    task.result.completeExceptionally(cause);
+                }
+            }
+            dispatch();
+        });
+    }
+
+    private void retry(Task<?> task, ModelRequestException failure) {
+        long exponential = Math.min(maxDelayNanos, baseDelayNanos << Math.min(30, task.attempts - 1));
+        // Equal jitter, so retries of requests which failed at the same time are spread out
+        long delay = exponential / 2 + ThreadLocalRandom.current().nextLong(exponential / 2 + 1);
+
+        if (failure.getRetryAfter() != null) {
+            long retryAfter = failure.getRetryAfter().toNanos();
+            delay = Math.max(delay, retryAfter);
+            synchronized (this) {
+                pausedUntilNanos = Math.max(pausedUntilNanos, System.nanoTime() + retryAfter);
+            }
+        }
+        timer.schedule(() -> enqueue(task), delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void wakeUpIn(long now, long wait) {
+        long at = now + wait;
+        if (wakeUpNanos != 0 && wakeUpNanos - at <= 0) {
+            // Already waking up in time
+            return;
+        }
+        wakeUpNanos = at;
+        timer.schedule(() -> {
+            synchronized (this) {
+                if (wakeUpNanos == at) {
+                    wakeUpNanos = 0;
+                }
+            }
+            dispatch();
+        }, wait, TimeUnit.NANOSECONDS);
+    }
+
+    private static long nanosUntil(TokenBucket bucket, int amount, long now) {
+        return bucket == null ? 0 : bucket.nanosUntil(amount, now);
+    }
+
+    private static void take(TokenBucket bucket, int amount) {
+        if (bucket != null) {
+            bucket.take(amount);
+        }
+    }
+
+    private static final class Task<T> implements Comparable<Task<?>> {
+        private final Priority priority;
+        private final long sequence;
+        private final int tokens;
+        private final Supplier<CompletableFuture<T>> request;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private int attempts;
+
+        private Task(Priority priority, long sequence, int tokens, Supplier<CompletableFuture<T>> request) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.tokens = tokens;
+            this.request = request;
+        }
+
+        @Override
+        public int compareTo(Task<?> other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Holds up to a minute's worth of permits, and refills continuously. Not thread-safe, guarded by the scheduler.
+     */
+    private static final class TokenBucket {
+        private final double capacity;
+        private final double perNano;
+        private double available;
+        private long updatedNanos = System.nanoTime();
+
+        private TokenBucket(int perMinute) {
+            this.capacity = perMinute;
+            this.perNano = perMinute / (double) TimeUnit.MINUTES.toNanos(1);
+            this.available = capacity;
+        }
+
+        long nanosUntil(int amount, long now) {
+            available = Math.min(capacity, available + (now - updatedNanos) * perNano);
+            updatedNanos = now;
+            // A request larger than the bucket is sent once the bucket is full
+            double missing = Math.min(amount, capacity) - available;
+            return missing <= 0 ? 0 : (long) Math.ceil(missing / perNano);
+        }
+
+        void take(int amount) {
+            available -= Math.min(amount, capacity);
+        }
+    }
+}
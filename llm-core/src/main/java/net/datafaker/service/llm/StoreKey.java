@@ -0,0 +1,39 @@
+package net.datafaker.service.llm;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+
+/**
+ * Identifies a set of stored values. Values generated by another model, for another locale or using another prompt
+ * are never mixed.
+ *
+ * @param model      The name of the model which generated the values.
+ * @param locale     The language tag of the locale the values were generated for.
+ * @param key        The faker key, such as "name.first_name".
+ * @param promptHash Hash of the prompt template which was used to generate the values.
+ */
+public record StoreKey(String model, String locale, String key, String promptHash) {
+
+    public static StoreKey of(String model, Locale locale, String key, String prompt) {
+        return new StoreKey(model, locale.toLanguageTag(), key, sha256(prompt));
+    }
+
+    /**
+     * @return A hash of all fields, which can safely be used as a file name.
+     */
+    public String digest() {
+        return sha256(model + '\0' + locale + '\0' + key + '\0' + promptHash);
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
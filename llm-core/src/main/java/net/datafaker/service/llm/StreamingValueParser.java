@@ -0,0 +1,86 @@
+package net.datafaker.service.llm;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * Extracts the string values of json arrays from text which arrives piece by piece, such as a streamed completion.
+ * Every value is passed on as soon as its closing quote arrives, instead of waiting for the whole document.
+ * <p>
+ * Only strings which are elements of an array are values, so both a plain array and an object with an array field,
+ * such as {"values": ["a", "b"]}, work. Anything outside of the json, such as markdown code fences, is ignored.
+ */
+public class StreamingValueParser {
+
+    private final Consumer<String> values;
+
+    /**
+     * The containers the parser is in, '[' for an array and '{' for an object.
+     */
+    private final Deque<Character> containers = new ArrayDeque<>();
+
+    private final StringBuilder current = new StringBuilder();
+    private boolean inString;
+    private boolean escaped;
+
+    /**
+     * Remaining hex digits of a unicode escape, and the character decoded so far.
+     */
+    private int unicodeDigits;
+    private int unicode;
+
+    public StreamingValueParser(Consumer<String> values) {
+        this.values = values;
+    }
+
+    public void feed(CharSequence chunk) {
+        for (int i = 0; i < chunk.length(); i++) {
+            feed(chunk.charAt(i));
+        }
+    }
+
+    private void feed(char c) {
+        if (!inString) {
+            switch (c) {
+                case '"' -> {
+                    inString = true;
+                    current.setLength(0);
+                }
+                case '[', '{' -> containers.push(c);
+                case ']', '}' -> containers.poll();
+                default -> {
+                    // Whitespace, separators and anything which isn't json
+                }
+            }
+        } else if (unicodeDigits > 0) {
+            unicode = unicode * 16 + Character.digit(c, 16);
+            if (--unicodeDigits == 0) {
+                current.append((char) unicode);
+            }
+        } else if (escaped) {
+            escaped = false;
+            switch (c) {
+                case 'b' -> current.append('\b');
+                case 'f' -> current.append('\f');
+                case 'n' -> current.append('\n');
+                case 'r' -> current.append('\r');
+                case 't' -> current.append('\t');
+                case 'u' -> {
+                    unicodeDigits = 4;
+                    unicode = 0;
+                }
+                default -> current.append(c);
+            }
+        } else if (c == '\\') {
+            escaped = true;
+        } else if (c == '"') {
+            inString = false;
+            if (!containers.isEmpty() && containers.peek() == '[') {
+                values.accept(current.toString());
+            }
+        } else {
+            current.append(c);
+        }
+    }
+}
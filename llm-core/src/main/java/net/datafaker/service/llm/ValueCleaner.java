@@ -0,0 +1,108 @@
+package net.datafaker.service.llm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Cleans up the values generated by the model before they're cached: values are normalized, values which don't pass
+ * the filter of their key are dropped, and so are values which were generated before.
+ * <p>
+ * Values count as duplicates when they only differ in case, so "Berlin" and "berlin" are the same city. Every value
+ * ever generated for a key and locale is remembered, so duplicates are also found across batches.
+ */
+final class ValueCleaner {
+
+    /**
+     * List markers models like to put in front of values, such as "1. ", "2) " or "- ".
+     */
+    private static final Pattern LIST_MARKER = Pattern.compile("^(?:\\d+[.)]|[-*•])\\s+");
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * @param values     The values which were accepted, in the order they were generated.
+     * @param duplicates The values which were generated before, without duplicates amongst themselves.
+     * @param invalid    The amount of values which didn't pass the filter.
+     */
+    record Cleaned(List<String> values, List<String> duplicates, int invalid) {
+    }
+
+    private record SeenKey(Locale locale, String key) {
+    }
+
+    private final ConcurrentHashMap<SeenKey, Set<String>> seen = new ConcurrentHashMap<>();
+
+    /**
+     * @param deduplicate Whether to drop values which were generated for the key and locale before.
+     */
+    Cleaned clean(Locale locale, String key, List<String> values, ValueFilter filter, boolean deduplicate) {
+        List<String> accepted = new ArrayList<>(values.size());
+        List<String> duplicates = new ArrayList<>();
+        Set<String> seenValues = deduplicate ? seen(locale, key) : null;
+        int invalid = 0;
+        for (String value : values) {
+            String normalized = value == null ? "" : normalize(value);
+            if (!filter.accepts(normalized)) {
+                invalid++;
+            } else if (seenValues == null || seenValues.add(identity(normalized))) {
+                accepted.add(normalized);
+            } else if (!containsIgnoringCase(duplicates, normalized)) {
+                duplicates.add(normalized);
+            }
+        }
+        return new Cleaned(accepted, duplicates, invalid);
+    }
+
+    /**
+     * Remembers values which didn't come from the model just now, such as restored values, so they count as
+     * duplicates later on.
+     */
+    void seen(Locale locale, String key, Collection<String> values) {
+        Set<String> seenValues = seen(locale, key);
+        for (String value : values) {
+            seenValues.add(identity(value));
+        }
+    }
+
+    private Set<String> seen(Locale locale, String key) {
+        return seen.computeIfAbsent(new SeenKey(locale, key), k -> ConcurrentHashMap.newKeySet());
+    }
+
+    /**
+     * Removes surrounding whitespace, list markers and quotes, and collapses whitespace within the value.
+     */
+    static String normalize(String value) {
+        String normalized = LIST_MARKER.matcher(value.strip()).replaceFirst("");
+        normalized = stripQuotes(normalized.strip());
+        return WHITESPACE.matcher(normalized.strip()).replaceAll(" ");
+    }
+
+    private static String stripQuotes(String value) {
+        if (value.length() >= 2) {
+            char first = value.charAt(0);
+            char last = value.charAt(value.length() - 1);
+            if ((first == '"' && last == '"') || (first == '\'' && last == '\'') || (first == '“' && last == '”')) {
+                return value.substring(1, value.length() - 1);
+            }
+        }
+        return value;
+    }
+
+    private static String identity(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean containsIgnoringCase(List<String> values, String value) {
+        for (String other : values) {
+            if (other.equalsIgnoreCase(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,43 @@
+package net.datafaker.service.llm;
+
+import java.util.regex.Pattern;
+
+/**
+ * Decides which generated values are good enough to be used, based on their length and optionally a pattern. Values
+ * are checked after they've been normalized, so without surrounding whitespace, quotes or list numbering.
+ */
+public final class ValueFilter {
+
+    /**
+     * Accepts any value which isn't empty, and isn't longer than a few sentences.
+     */
+    public static final ValueFilter DEFAULT = new ValueFilter(1, 200, null);
+
+    private final int minLength;
+    private final int maxLength;
+    private final Pattern pattern;
+
+    /**
+     * @param minLength The minimum amount of characters of a value.
+     * @param maxLength The maximum amount of characters of a value.
+     * @param pattern   The pattern every value should match completely, or null to accept any value.
+     */
+    public ValueFilter(int minLength, int maxLength, Pattern pattern) {
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.pattern = pattern;
+    }
+
+    /**
+     * @return A filter which accepts the values of the default length which match the regular expression.
+     */
+    public static ValueFilter matching(String regex) {
+        return new ValueFilter(DEFAULT.minLength, DEFAULT.maxLength, Pattern.compile(regex));
+    }
+
+    public boolean accepts(String value) {
+        return value.length() >= minLength
+                && value.length() <= maxLength
+                && (pattern == null || pattern.matcher(value).matches());
+    }
+}
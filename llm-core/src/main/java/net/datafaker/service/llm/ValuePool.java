@@ -0,0 +1,272 @@
+package net.datafaker.service.llm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe pool of generated values, with a separate lock per locale and key. Values of different locales are
+ * never mixed, since they're in another language.
+ * <p>
+ * Loading is single-flight: while values for a key are being generated, other callers wait on that same load
+ * instead of asking the model for another batch.
+ */
+class ValuePool {
+
+    /**
+     * Generates values for a pool. Values can either be passed to the sink as soon as they're available, or be
+     * returned all at once when the load completes.
+     */
+    interface Loader {
+        CompletableFuture<List<String>> load(Consumer<String> sink);
+    }
+
+    /**
+     * The values per locale, and per key within a locale. Nested maps, so finding the values of a key doesn't need to
+     * allocate a combined key.
+     */
+    private final ConcurrentHashMap<Locale, ConcurrentHashMap<String, Values>> pools = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the storage of pools which don't exist yet.
+     */
+    private volatile Supplier<PoolStorage> storage = PoolStorage::list;
+
+    Values get(Locale locale, String key) {
+        ConcurrentHashMap<String, Values> localePools = pools.computeIfAbsent(locale, l -> new ConcurrentHashMap<>());
+        Values values = localePools.get(key);
+        if (values == null) {
+            // Only created on a miss, since the lambda captures the pool
+            values = localePools.computeIfAbsent(key, k -> new Values(storage.get()));
+        }
+        return values;
+    }
+
+    void setStorage(Supplier<PoolStorage> storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * @return The values of all keys which have any, per locale, sorted by key and by value, so equal pools give equal
+     * snapshots regardless of the order in which the values were generated.
+     */
+    Map<Locale, Map<String, List<String>>> snapshot() {
+        Map<Locale, Map<String, List<String>>> snapshot = new HashMap<>();
+        pools.forEach((locale, localePools) -> localePools.forEach((key, values) -> {
+            List<String> copy = values.copy();
+            if (!copy.isEmpty()) {
+                Collections.sort(copy);
+                snapshot.computeIfAbsent(locale, l -> new TreeMap<>()).put(key, copy);
+            }
+        }));
+        return snapshot;
+    }
+
+    static final class Values {
+
+        private final PoolStorage values;
+
+        /**
+         * The amount of values, which can be read without locking.
+         */
+        private volatile int size;
+
+        /**
+         * Whether a load is in flight.
+         */
+        private boolean loading;
+
+        /**
+         * While loading, the future the callers waiting for values get. It completes as soon as values are added, after
+         * which it's replaced by a new one for callers who arrive later. When the load has finished, it completes with
+         * the amount of values the load added.
+         */
+        private CompletableFuture<Integer> available;
+
+        /**
+         * When the last load which didn't add any values failed, or 0 if the last load succeeded.
+         */
+        private long lastFailureNanos;
+
+        private int drawsSinceLoad;
+        private long lastLoadNanos = System.nanoTime();
+
+        Values(PoolStorage values) {
+            this.values = values;
+        }
+
+        /**
+         * Draws in constant time: a consumed value is replaced by the last value, instead of shifting all values after
+         * it. The order of the values doesn't matter, since every draw picks a random one.
+         *
+         * @param consume Whether to remove the value from the pool, or to leave it there so it can be drawn again.
+         * @return A random value, or null if the pool is empty.
+         */
+        synchronized String draw(Random random, boolean consume) {
+            int size = values.size();
+            if (size == 0) {
+                return null;
+            }
+            drawsSinceLoad++;
+            int index = random.nextInt(size);
+            if (!consume) {
+                return values.get(index);
+            }
+            this.size = size - 1;
+            return values.remove(index);
+        }
+
+        /**
+         * @param maxDraws    The amount of draws after which the values are stale, or 0 to ignore the amount of draws.
+         * @param maxAgeNanos The age after which the values are stale, or 0 to ignore the age.
+         * @return Whether the values were drawn or kept for too long since the last load.
+         */
+        synchronized boolean isStale(int maxDraws, long maxAgeNanos) {
+            return (maxDraws > 0 && drawsSinceLoad >= maxDraws)
+                    || (maxAgeNanos > 0 && System.nanoTime() - lastLoadNanos >= maxAgeNanos);
+        }
+
+        /**
+         * Adds values which were generated outside of a load of this pool.
+         */
+        synchronized void add(List<String> generated) {
+            addAll(generated);
+            drawsSinceLoad = 0;
+            lastLoadNanos = System.nanoTime();
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * @return Whether the last load failed less than the given time ago.
+         */
+        synchronized boolean failedWithin(long nanos) {
+            return lastFailureNanos != 0 && System.nanoTime() - lastFailureNanos < nanos;
+        }
+
+        synchronized List<String> copy() {
+            List<String> copy = new ArrayList<>(values.size());
+            for (int i = 0; i < values.size(); i++) {
+                copy.add(values.get(i));
+            }
+            return copy;
+        }
+
+        /**
+         * Replaces all values, keeping their order, so the same random numbers draw the same values.
+         */
+        synchronized void replace(List<String> restored) {
+            values.clear();
+            addAll(restored);
+            drawsSinceLoad = 0;
+            lastLoadNanos = System.nanoTime();
+        }
+
+        private void addAll(List<String> added) {
+            for (String value : added) {
+                values.add(value);
+            }
+            size = values.size();
+        }
+
+        /**
+         * Makes sure there are values available. When the pool is empty, and nobody is loading already,
+         * the loader is started.
+         *
+         * @return A future which completes as soon as values are available, with the amount of values added.
+         * When it completes with 0, the loader didn't come up with any values.
+         */
+        CompletableFuture<Integer> awaitValues(Loader loader) {
+            CompletableFuture<Integer> future;
+            synchronized (this) {
+                if (values.size() > 0) {
+                    return CompletableFuture.completedFuture(values.size());
+                }
+                if (loading) {
+                    return available;
+                }
+                loading = true;
+                future = available = new CompletableFuture<>();
+            }
+            load(loader);
+            return future;
+        }
+
+        /**
+         * Starts loading more values, unless a load is in flight already.
+         */
+        void refill(Loader loader) {
+            synchronized (this) {
+                if (loading) {
+                    return;
+                }
+                loading = true;
+                available = new CompletableFuture<>();
+            }
+            load(loader);
+        }
+
+        private void load(Loader loader) {
+            AtomicInteger added = new AtomicInteger();
+            Consumer<String> sink = value -> {
+                CompletableFuture<Integer> waiting;
+                synchronized (this) {
+                    values.add(value);
+                    size = values.size();
+                    waiting = available;
+                    if (waiting != null) {
+                        available = new CompletableFuture<>();
+                    }
+                }
+                added.incrementAndGet();
+                if (waiting != null) {
+                    waiting.complete(1);
+                }
+            };
+
+            CompletableFuture<List<String>> generated;
+            try {
+                generated = loader.load(sink);
+            } catch (Throwable t) {
+                generated = CompletableFuture.failedFuture(t);
+            }
+
+            generated.whenComplete((result, failure) -> {
+                CompletableFuture<Integer> waiting;
+                synchronized (this) {
+                    if (failure == null && result != null && !result.isEmpty()) {
+                        addAll(result);
+                        added.addAndGet(result.size());
+                    }
+                    if (added.get() > 0) {
+                        drawsSinceLoad = 0;
+                        lastLoadNanos = System.nanoTime();
+                        lastFailureNanos = 0;
+                    } else if (failure != null) {
+                        lastFailureNanos = System.nanoTime();
+                    }
+                    waiting = available;
+                    available = null;
+                    loading = false;
+                }
+                if (failure != null && added.get() == 0) {
+                    waiting.completeExceptionally(failure);
+                } else {
+                    waiting.complete(added.get());
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package net.datafaker.service.llm;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Publishes an endless stream of values, fetching the next value only when the subscriber asked for it.
+ */
+class ValuePublisher implements Flow.Publisher<String> {
+
+    private final Supplier<CompletableFuture<String>> next;
+
+    ValuePublisher(Supplier<CompletableFuture<String>> next) {
+        this.next = next;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super String> subscriber) {
+        subscriber.onSubscribe(new ValueSubscription(subscriber, next));
+    }
+
+    private static final class ValueSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super String> subscriber;
+        private final Supplier<CompletableFuture<String>> next;
+
+        private final AtomicLong demand = new AtomicLong();
+
+        /**
+         * Set while a value is being fetched or emitted, so the subscriber is never signalled concurrently.
+         */
+        private final AtomicBoolean busy = new AtomicBoolean();
+
+        private volatile boolean done;
+
+        private ValueSubscription(Flow.Subscriber<? super String> subscriber, Supplier<CompletableFuture<String>> next) {
+            this.subscriber = subscriber;
+            this.next = next;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("The amount of requested values must be positive, but was " + n));
+                return;
+            }
+            demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+        }
+
+        private void drain() {
+            // Values which are available right away are emitted in this loop instead of recursively,
+            // so a large demand doesn't overflow the stack.
+            while (!done && demand.get() > 0 && busy.compareAndSet(false, true)) {
+                CompletableFuture<String> value = next.get();
+                if (!value.isDone()) {
+                    value.whenComplete((result, failure) -> {
+                        emit(result, failure);
+                        busy.set(false);
+                        drain();
+                    });
+                    return;
+                }
+
+                try {
+                    emit(value.join(), null);
+                } catch (CompletionException e) {
+                    emit(null, e.getCause());
+                }
+                busy.set(false);
+            }
+        }
+
+        private void emit(String value, Throwable failure) {
+            if (done) {
+                return;
+            }
+            if (failure != null) {
+                fail(failure);
+            } else if (value == null) {
+                fail(new IllegalStateException("The model did not generate any values"));
+            } else {
+                demand.decrementAndGet();
+                subscriber.onNext(value);
+            }
+        }
+
+        private void fail(Throwable failure) {
+            done = true;
+            subscriber.onError(failure);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package net.datafaker.service.llm;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Persistent storage for generated values, so they survive restarts of the JVM.
+ * <p>
+ * Values are only ever appended. On a warm start, the stored values of a key are loaded the first time the key
+ * is used, and only once they've run out the model is called again.
+ */
+public interface ValueStore {
+
+    /**
+     * @return All values stored for the key, or an empty list if there are none.
+     */
+    List<String> load(StoreKey key) throws IOException;
+
+    /**
+     * Adds the values to the ones already stored for the key.
+     */
+    void append(StoreKey key, List<String> values) throws IOException;
+}
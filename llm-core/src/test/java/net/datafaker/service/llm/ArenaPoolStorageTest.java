@@ -0,0 +1,83 @@
+package net.datafaker.service.llm;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ArenaPoolStorageTest {
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void valuesAreKeptAsTheyWereAdded(boolean direct) {
+        PoolStorage storage = PoolStorage.arena(direct);
+
+        storage.add("Zoë");
+        storage.add("");
+        storage.add("北京");
+
+        assertThat(storage.size()).isEqualTo(3);
+        assertThat(storage.get(0)).isEqualTo("Zoë");
+        assertThat(storage.get(1)).isEmpty();
+        assertThat(storage.get(2)).isEqualTo("北京");
+
+        assertThat(storage.remove(0)).isEqualTo("Zoë");
+        assertThat(storage.get(0)).isEqualTo("北京");
+        assertThat(storage.size()).isEqualTo(2);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void behavesLikeAListWhileGrowingAndCompacting(boolean direct) {
+        PoolStorage arena = PoolStorage.arena(direct);
+        PoolStorage list = PoolStorage.list();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 50_000; i++) {
+            if (list.size() > 0 && random.nextInt(3) == 0) {
+                int index = random.nextInt(list.size());
+                assertThat(arena.remove(index)).isEqualTo(list.remove(index));
+            } else {
+                String value = "value-" + i + "-é".repeat(random.nextInt(20));
+                arena.add(value);
+                list.add(value);
+            }
+        }
+
+        assertThat(contents(arena)).isEqualTo(contents(list));
+        arena.clear();
+        assertThat(arena.size()).isZero();
+    }
+
+    private static List<String> contents(PoolStorage storage) {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < storage.size(); i++) {
+            values.add(storage.get(i));
+        }
+        return values;
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void valuesWhichDoNotFitAreRejected(boolean direct) {
+        PoolStorage storage = new ArenaPoolStorage(direct, 10_000);
+        String value = "x".repeat(1_000);
+        for (int i = 0; i < 10; i++) {
+            storage.add(value);
+        }
+
+        assertThatThrownBy(() -> storage.add("y")).isInstanceOf(IllegalStateException.class);
+        assertThat(storage.size()).isEqualTo(10);
+
+        // Removed values make room again
+        storage.remove(3);
+        storage.add("y");
+        assertThat(storage.get(9)).isEqualTo("y");
+        assertThat(storage.get(0)).isEqualTo(value);
+    }
+}
@@ -0,0 +1,92 @@
+package net.datafaker.service.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchSizerTest {
+
+    private final AtomicLong now = new AtomicLong(1);
+
+    private final BatchSizer sizer = new BatchSizer(now::get);
+
+    @Test
+    void hotKeysGetLargerBatches() {
+        assertThat(sizer.next("name.first_name", 5, 30, 0)).isEqualTo(5);
+        assertThat(sizer.next("name.first_name", 5, 30, 0)).isEqualTo(10);
+        assertThat(sizer.next("name.first_name", 5, 30, 0)).isEqualTo(20);
+        assertThat(sizer.next("name.first_name", 5, 30, 0)).isEqualTo(30);
+        assertThat(sizer.next("address.city", 5, 30, 0)).isEqualTo(5);
+    }
+
+    @Test
+    void batchesFitInTheMaximumAmountOfTokens() {
+        sizer.next("name.first_name", 10, 100, 500);
+        // 10 values of 10 tokens, plus the json around them
+        sizer.learn(List.of("name.first_name"), 10, 116);
+
+        int capacity = sizer.capacity(List.of("name.first_name"), 100, 500, 10);
+
+        assertThat(capacity).isEqualTo(40);
+        for (int i = 0; i < 5; i++) {
+            assertThat(sizer.next("name.first_name", 10, 100, 500)).isLessThanOrEqualTo(capacity);
+        }
+    }
+
+    @Test
+    void keysInASingleRequestShareTheTokens() {
+        List<String> keys = List.of("name.first_name", "address.city");
+        sizer.next(keys, 10, 100, 500);
+        sizer.learn(keys, 10, 232);
+
+        assertThat(sizer.capacity(keys, 100, 500, 10)).isEqualTo(19);
+    }
+
+    @Test
+    void truncatedBatchesShrink() {
+        sizer.next("name.first_name", 40, 100, 500);
+        sizer.truncated(List.of("name.first_name"), 40, 500);
+
+        assertThat(sizer.capacity(List.of("name.first_name"), 100, 500, 40)).isLessThan(40);
+        assertThat(sizer.next("name.first_name", 40, 100, 500)).isLessThan(40);
+    }
+
+    @Test
+    void truncatedBatchesDoNotGrowBackWithoutATokenLimit() {
+        assertThat(next("name.first_name", 0)).isEqualTo(5);
+        assertThat(next("name.first_name", 0)).isEqualTo(10);
+        sizer.truncated(List.of("name.first_name"), 10, 0);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(next("name.first_name", 0)).isEqualTo(8);
+        }
+    }
+
+    @Test
+    void coldKeysDoNotGrowAlongWithHotKeys() {
+        for (int i = 0; i < 3; i++) {
+            next("name.first_name", 0);
+        }
+        next("address.city", 0);
+        now.addAndGet(TimeUnit.MINUTES.toNanos(5));
+        next("name.first_name", 0);
+
+        List<String> keys = List.of("name.first_name", "address.city");
+        for (int i = 0; i < 3; i++) {
+            now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+            assertThat(sizer.next(keys, 5, 100, 0)).isEqualTo(5);
+        }
+    }
+
+    /**
+     * Sizes the next batch of the key a second after the previous one, so the key is hot.
+     */
+    private int next(String key, int maxTokens) {
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        return sizer.next(key, 5, 100, maxTokens);
+    }
+}
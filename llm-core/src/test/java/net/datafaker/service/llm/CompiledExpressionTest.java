@@ -0,0 +1,32 @@
+package net.datafaker.service.llm;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompiledExpressionTest {
+
+    @Test
+    void referencesToKeysAreSeparatedFromOtherPlaceholders() {
+        CompiledExpression expression = CompiledExpression.compile(
+                "Dear #{Name.first_name} #{last_name}, you won #{number.number_between '1','10'}!",
+                content -> content.equals("last_name") ? "name.last_name" : "key:" + content);
+
+        assertThat(expression.keys()).containsExactly("key:Name.first_name", "name.last_name");
+        assertThat(expression.placeholders()).extracting(CompiledExpression.Placeholder::text)
+                .containsExactly("#{Name.first_name}", "#{last_name}", "#{number.number_between '1','10'}");
+        assertThat(expression.placeholders()[2].key()).isNull();
+        assertThat(expression.literal(0)).isEqualTo("Dear ");
+        assertThat(expression.literal(1)).isEqualTo(" ");
+        assertThat(expression.literal(2)).isEqualTo(", you won ");
+        assertThat(expression.literal(3)).isEqualTo("!");
+    }
+
+    @Test
+    void unclosedPlaceholderIsLiteralText() {
+        CompiledExpression expression = CompiledExpression.compile("#{Name.first_name} #{Name", content -> content);
+
+        assertThat(expression.keys()).containsExactly("Name.first_name");
+        assertThat(expression.literal(1)).isEqualTo(" #{Name");
+    }
+}
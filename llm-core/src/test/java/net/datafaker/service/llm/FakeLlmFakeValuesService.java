@@ -0,0 +1,199 @@
+package net.datafaker.service.llm;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import net.datafaker.service.FakerContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Stand-in for a model, which generates unique values per key and counts how often it was called.
+ */
+class FakeLlmFakeValuesService extends LlmFakeValuesService {
+
+    private final Gson gson = new Gson();
+    private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private volatile long latencyMillis;
+    private volatile boolean streaming;
+    private final AtomicInteger failures = new AtomicInteger();
+    private final Queue<String> answers = new ConcurrentLinkedQueue<>();
+
+    FakeLlmFakeValuesService(int amountOfItemsToGenerate, long latencyMillis) {
+        super(amountOfItemsToGenerate);
+        this.latencyMillis = latencyMillis;
+    }
+
+    @Override
+    protected String getModelName() {
+        return "fake";
+    }
+
+    /**
+     * The fake model understands prompts of the form "amount key".
+     */
+    @Override
+    protected PromptTemplate getDefaultPromptTemplate() {
+        return PromptTemplate.of("{amount} {rawKey}");
+    }
+
+    /**
+     * The fake model understands prompts of the form "amount key,key".
+     */
+    @Override
+    protected String createPrompt(List<String> keys, int amount, FakerContext context) {
+        return amount + " " + String.join(",", keys);
+    }
+
+    /**
+     * The fake model understands prompts of the form "amount key,key records".
+     */
+    @Override
+    protected String createRecordPrompt(List<String> keys, int amount, FakerContext context) {
+        return createPrompt(keys, amount, context) + " records";
+    }
+
+    /**
+     * The fake model understands prompts of the form "amount key locales tag,tag".
+     */
+    @Override
+    protected String createLocalesPrompt(String key, List<Locale> locales, int amount) {
+        List<String> tags = new ArrayList<>();
+        for (Locale locale : locales) {
+            tags.add(locale.toLanguageTag());
+        }
+        return amount + " " + key + " locales " + String.join(",", tags);
+    }
+
+    @Override
+    protected String complete(String prompt) throws Exception {
+        requests.incrementAndGet();
+        Thread.sleep(latencyMillis);
+        if (failures.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+            throw new ModelRequestException("Rate limited", 429, Duration.ZERO);
+        }
+        String answer = answers.poll();
+        if (answer != null) {
+            return answer;
+        }
+
+        String[] split = prompt.split(" ");
+        int amount = Integer.parseInt(split[0]);
+        String[] keys = split[1].split(",");
+
+        if (split.length > 3 && split[2].equals("locales")) {
+            // Every locale gets its own values, tagged with the locale
+            calls.computeIfAbsent(keys[0], k -> new AtomicInteger()).incrementAndGet();
+            Map<String, List<String>> values = new LinkedHashMap<>();
+            for (String tag : split[3].split(",")) {
+                List<String> tagValues = new ArrayList<>();
+                for (int i = 0; i < amount; i++) {
+                    tagValues.add(keys[0] + "-" + tag + "-" + sequence.incrementAndGet());
+                }
+                values.put(tag, tagValues);
+            }
+            String text = gson.toJson(values);
+            recordTokens(prompt, prompt.length(), text.length());
+            return text;
+        }
+        if (split.length > 2) {
+            // All values of a record have the same number
+            List<Map<String, String>> records = new ArrayList<>();
+            for (int i = 0; i < amount; i++) {
+                int number = sequence.incrementAndGet();
+                Map<String, String> record = new LinkedHashMap<>();
+                for (String key : keys) {
+                    record.put(key, key + "-" + number);
+                }
+                records.add(record);
+            }
+            String text = gson.toJson(records);
+            recordTokens(prompt, prompt.length(), text.length());
+            return text;
+        }
+        Map<String, List<String>> values = new LinkedHashMap<>();
+        for (String key : keys) {
+            calls.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+
+            List<String> keyValues = new ArrayList<>();
+            for (int i = 0; i < amount; i++) {
+                keyValues.add(key + "-" + sequence.incrementAndGet());
+            }
+            values.put(key, keyValues);
+        }
+        String text = keys.length == 1 ? gson.toJson(values.get(keys[0])) : gson.toJson(values);
+        // One token per character
+        recordTokens(prompt, prompt.length(), text.length());
+        return text;
+    }
+
+    /**
+     * Streams the answer a few characters at a time.
+     */
+    @Override
+    protected CompletableFuture<Void> completeStreaming(String prompt, Consumer<String> chunks) {
+        streaming = true;
+        return CompletableFuture.runAsync(() -> {
+            try {
+                String text = complete(prompt);
+                for (int i = 0; i < text.length(); i += 3) {
+                    chunks.accept(text.substring(i, Math.min(text.length(), i + 3)));
+                    Thread.sleep(1);
+                }
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                streaming = false;
+            }
+        });
+    }
+
+    @Override
+    protected List<String> parseValues(String text) {
+        return gson.fromJson(text, new TypeToken<List<String>>() {}.getType());
+    }
+
+    void setLatency(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Makes the next requests fail, as if the model is rate limited.
+     */
+    void setFailures(int failures) {
+        this.failures.set(failures);
+    }
+
+    /**
+     * Makes the model answer the next request with the given text, instead of with generated values.
+     */
+    void addAnswer(String text) {
+        answers.add(text);
+    }
+
+    int getCalls(String key) {
+        AtomicInteger count = calls.get(key);
+        return count == null ? 0 : count.get();
+    }
+
+    boolean isStreaming() {
+        return streaming;
+    }
+
+    int getRequests() {
+        return requests.get();
+    }
+}
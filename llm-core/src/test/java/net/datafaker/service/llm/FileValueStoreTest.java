@@ -0,0 +1,153 @@
+package net.datafaker.service.llm;
+
+import net.datafaker.Faker;
+import net.datafaker.service.FakerContext;
+import net.datafaker.service.RandomService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileValueStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void appendedBatchesAreLoadedInOrder() throws Exception {
+        FileValueStore store = new FileValueStore(directory);
+        StoreKey key = StoreKey.of("fake", Locale.ENGLISH, "name.first_name", "prompt");
+
+        store.append(key, List.of("Alice", "Bob"));
+        store.append(key, List.of("Chloé"));
+
+        assertThat(store.load(key)).containsExactly("Alice", "Bob", "Chloé");
+        assertThat(store.load(StoreKey.of("fake", Locale.GERMAN, "name.first_name", "prompt"))).isEmpty();
+    }
+
+    @Test
+    void valuesLongerThan64KbAreStored() throws Exception {
+        FileValueStore store = new FileValueStore(directory);
+        StoreKey key = StoreKey.of("fake", Locale.ENGLISH, "lorem.paragraph", "prompt");
+        String paragraph = "Ünïcode paragraph. ".repeat(5_000);
+
+        store.append(key, List.of("short", paragraph));
+
+        assertThat(store.load(key)).containsExactly("short", paragraph);
+    }
+
+    @Test
+    void incompleteBatchIsSkipped() throws Exception {
+        FileValueStore store = new FileValueStore(directory);
+        StoreKey key = StoreKey.of("fake", Locale.ENGLISH, "name.first_name", "prompt");
+        store.append(key, List.of("Alice", "Bob"));
+
+        Path file = directory.resolve(key.digest() + ".utf8values");
+        Files.write(file, new byte[]{0, 0, 0, 2, 0, 0, 0, 3, 'E', 'v'}, StandardOpenOption.APPEND);
+
+        assertThat(store.load(key)).containsExactly("Alice", "Bob");
+    }
+
+    @Test
+    void batchesAppendedAfterAnIncompleteBatchAreLoaded() throws Exception {
+        StoreKey key = StoreKey.of("fake", Locale.ENGLISH, "name.first_name", "prompt");
+        new FileValueStore(directory).append(key, List.of("Alice", "Bob"));
+
+        Path file = directory.resolve(key.digest() + ".utf8values");
+        Files.write(file, new byte[]{0, 0, 0, 2, 0, 0, 0, 3, 'E', 'v'}, StandardOpenOption.APPEND);
+
+        FileValueStore store = new FileValueStore(directory);
+        store.append(key, List.of("Chloé"));
+        store.append(key, List.of("Dan"));
+
+        assertThat(store.load(key)).containsExactly("Alice", "Bob", "Chloé", "Dan");
+    }
+
+    @Test
+    void lengthBeyondTheEndOfTheFileIsNotAllocated() throws Exception {
+        FileValueStore store = new FileValueStore(directory);
+        StoreKey key = StoreKey.of("fake", Locale.ENGLISH, "name.first_name", "prompt");
+        store.append(key, List.of("Alice"));
+
+        Path file = directory.resolve(key.digest() + ".utf8values");
+        Files.write(file, new byte[]{0, 0, 0, 1, 0x7f, -1, -1, -1, 'E'}, StandardOpenOption.APPEND);
+
+        assertThat(store.load(key)).containsExactly("Alice");
+    }
+
+    @Test
+    void warmStartDoesNotCallTheModel() {
+        FakeLlmFakeValuesService cold = new FakeLlmFakeValuesService(10, 0);
+        cold.setValueStore(new FileValueStore(directory));
+        String first = new Faker(cold, context()).name().firstName();
+        assertThat(cold.getCalls("name.first_name")).isEqualTo(1);
+
+        FakeLlmFakeValuesService warm = new FakeLlmFakeValuesService(10, 0);
+        warm.setValueStore(new FileValueStore(directory));
+        Faker faker = new Faker(warm, context());
+        for (int i = 0; i < 10; i++) {
+            assertThat(faker.name().firstName()).startsWith("name.first_name-");
+        }
+        assertThat(warm.getCalls("name.first_name")).isZero();
+        assertThat(first).startsWith("name.first_name-");
+    }
+
+    @Test
+    void batchLocalesAreNotRestoredAfterTheyWereHandedOut() {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 0);
+        service.setValueStore(new FileValueStore(directory));
+        service.setBatchLocales(List.of(Locale.GERMAN, Locale.FRENCH));
+        service.resolve("address.city", null, context(Locale.GERMAN));
+
+        Set<String> french = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            french.add(service.resolve("address.city", null, context(Locale.FRENCH)));
+        }
+        assertThat(french).hasSize(10);
+        assertThat(service.getRequests()).isEqualTo(1);
+
+        // The stored french values were handed out already, so the model is asked for new ones
+        assertThat(french).doesNotContain(service.resolve("address.city", null, context(Locale.FRENCH)));
+        assertThat(service.getRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void warmStartRestoresTheOtherBatchLocales() {
+        FakeLlmFakeValuesService cold = new FakeLlmFakeValuesService(10, 0);
+        cold.setValueStore(new FileValueStore(directory));
+        cold.setBatchLocales(List.of(Locale.GERMAN, Locale.FRENCH));
+        cold.resolve("address.city", null, context(Locale.GERMAN));
+        Set<String> stored = new HashSet<>(cold.snapshot().getValues(Locale.GERMAN, "address.city"));
+
+        Locale dutch = Locale.forLanguageTag("nl");
+        FakeLlmFakeValuesService warm = new FakeLlmFakeValuesService(10, 0);
+        warm.setValueStore(new FileValueStore(directory));
+        warm.setBatchLocales(List.of(Locale.GERMAN, Locale.FRENCH, dutch));
+        assertThat(warm.resolve("address.city", null, context(dutch))).startsWith("address.city-");
+
+        // Only the dutch values are generated, german and french are on disk already
+        assertThat(warm.snapshot().getValues(Locale.FRENCH, "address.city")).hasSize(10);
+        assertThat(warm.snapshot().getValues(Locale.GERMAN, "address.city")).hasSize(10).containsAll(stored);
+        assertThat(warm.getRequests()).isEqualTo(1);
+    }
+
+    private static FakerContext context(Locale locale) {
+        return new FakerContext(locale, new RandomService(new Random()));
+    }
+
+    /**
+     * Datafaker caches providers per context, so every faker gets a context of its own.
+     */
+    private static FakerContext context() {
+        return new FakerContext(Locale.ENGLISH, new RandomService(new Random()));
+    }
+}
@@ -0,0 +1,102 @@
+package net.datafaker.service.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HedgerTest {
+
+    private static final String PROMPT = "5 name.first_name";
+
+    private final FakeLlmFakeValuesService hedge = new FakeLlmFakeValuesService(5, 0);
+
+    private final List<Boolean> reports = new CopyOnWriteArrayList<>();
+
+    @Test
+    void requestsAreNotHedgedUntilLatenciesAreKnown() throws Exception {
+        Hedger hedger = new Hedger(new HedgingPolicy(0.9, Duration.ofMillis(10), 1), hedge::completeAsync);
+        CompletableFuture<String> primary = new CompletableFuture<>();
+
+        CompletableFuture<String> result = hedger.complete(PROMPT, prompt -> primary, reports::add);
+        Thread.sleep(100);
+
+        assertThat(result).isSameAs(primary);
+        assertThat(hedge.getRequests()).isZero();
+    }
+
+    @Test
+    void slowRequestsAreHedgedAndTheLoserIsCancelled() throws Exception {
+        Hedger hedger = hedger(new HedgingPolicy(0.9, Duration.ofMillis(10), 1));
+        CompletableFuture<String> primary = new CompletableFuture<>();
+
+        String text = hedger.complete(PROMPT, prompt -> primary, reports::add).get(1, TimeUnit.SECONDS);
+
+        assertThat(text).contains("name.first_name-");
+        assertThat(primary).isCancelled();
+        assertThat(reports).containsExactly(true);
+    }
+
+    @Test
+    void fastRequestsAreNotHedged() throws Exception {
+        Hedger hedger = hedger(new HedgingPolicy(0.9, Duration.ofMillis(50), 1));
+
+        String text = hedger.complete(PROMPT, prompt -> CompletableFuture.completedFuture("fast"), reports::add)
+                .get(1, TimeUnit.SECONDS);
+        Thread.sleep(100);
+
+        assertThat(text).isEqualTo("fast");
+        assertThat(hedge.getRequests()).isZero();
+        assertThat(reports).isEmpty();
+    }
+
+    @Test
+    void cancelledRequestsKeepTheDelayFromShrinking() throws Exception {
+        Hedger hedger = new Hedger(new HedgingPolicy(0.5, Duration.ofMillis(1), 1), hedge::completeAsync);
+        for (int i = 0; i < 20; i++) {
+            hedger.record(TimeUnit.MILLISECONDS.toNanos(20));
+        }
+
+        // Half of the requests answer right away, the other half never answers and loses to the hedged request
+        for (int round = 0; round < 10; round++) {
+            List<CompletableFuture<String>> results = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                CompletableFuture<String> primary = i % 2 == 0 ? CompletableFuture.completedFuture("fast") : new CompletableFuture<>();
+                results.add(hedger.complete(PROMPT, prompt -> primary, reports::add));
+            }
+            CompletableFuture.allOf(results.toArray(CompletableFuture<?>[]::new)).get(1, TimeUnit.SECONDS);
+        }
+
+        assertThat(hedger.delayNanos()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    void hedgingAddsNoMoreThanTheExtraLoad() throws Exception {
+        Hedger hedger = hedger(new HedgingPolicy(0.9, Duration.ofMillis(50), 0.1));
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            results.add(hedger.complete(PROMPT, prompt -> new CompletableFuture<>(), reports::add));
+        }
+        Thread.sleep(300);
+
+        assertThat(hedge.getRequests()).isEqualTo(2);
+        assertThat(results.stream().filter(CompletableFuture::isDone)).hasSize(2);
+    }
+
+    /**
+     * @return A hedger which knows that requests usually take a millisecond.
+     */
+    private Hedger hedger(HedgingPolicy policy) {
+        Hedger hedger = new Hedger(policy, hedge::completeAsync);
+        for (int i = 0; i < 50; i++) {
+            hedger.record(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return hedger;
+    }
+}
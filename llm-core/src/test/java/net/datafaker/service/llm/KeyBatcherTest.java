@@ -0,0 +1,53 @@
+package net.datafaker.service.llm;
+
+import net.datafaker.service.FakerContext;
+import net.datafaker.service.RandomService;
+import net.datafaker.service.llm.RequestScheduler.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeyBatcherTest {
+
+    private final FakerContext context = new FakerContext(Locale.ENGLISH, new RandomService());
+
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+    private final KeyBatcher batcher = new KeyBatcher((keys, context, priority) -> {
+        batches.add(keys);
+        Map<String, List<String>> values = new HashMap<>();
+        for (String key : keys) {
+            values.put(key, List.of(key + "-1"));
+        }
+        return values;
+    }, Runnable::run, TimeUnit.HOURS.toNanos(1), 10);
+
+    @Test
+    void closingSendsTheWaitingKeys() throws Exception {
+        CompletableFuture<List<String>> first = batcher.submit("name.first_name", context, Priority.FOREGROUND);
+        CompletableFuture<List<String>> last = batcher.submit("name.last_name", context, Priority.FOREGROUND);
+        assertThat(batches).isEmpty();
+
+        batcher.close();
+
+        assertThat(first.get(1, TimeUnit.SECONDS)).containsExactly("name.first_name-1");
+        assertThat(last.get(1, TimeUnit.SECONDS)).containsExactly("name.last_name-1");
+        assertThat(batches).containsExactly(List.of("name.first_name", "name.last_name"));
+    }
+
+    @Test
+    void keysSubmittedAfterClosingAreSentRightAway() throws Exception {
+        batcher.close();
+
+        assertThat(batcher.submit("address.city", context, Priority.FOREGROUND).get(1, TimeUnit.SECONDS))
+                .containsExactly("address.city-1");
+    }
+}
@@ -0,0 +1,51 @@
+package net.datafaker.service.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LineSubscriberTest {
+
+    private final List<String> lines = new CopyOnWriteArrayList<>();
+
+    private final AtomicBoolean subscriptionCancelled = new AtomicBoolean();
+
+    private final Flow.Subscription subscription = new Flow.Subscription() {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+            subscriptionCancelled.set(true);
+        }
+    };
+
+    @Test
+    void cancellingStopsTheStream() {
+        LineSubscriber subscriber = new LineSubscriber(lines::add);
+        subscriber.onSubscribe(subscription);
+        subscriber.onNext("first");
+
+        subscriber.cancel();
+        subscriber.onNext("second");
+
+        assertThat(subscriptionCancelled).isTrue();
+        assertThat(lines).containsExactly("first");
+    }
+
+    @Test
+    void cancellingBeforeTheResponseArrivesCancelsTheSubscription() {
+        LineSubscriber subscriber = new LineSubscriber(lines::add);
+
+        subscriber.cancel();
+        subscriber.onSubscribe(subscription);
+
+        assertThat(subscriptionCancelled).isTrue();
+    }
+}
@@ -0,0 +1,73 @@
+package net.datafaker.service.llm;
+
+import net.datafaker.Faker;
+import net.datafaker.service.FakerContext;
+import net.datafaker.service.RandomService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LlmFakeValuesServiceConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int DRAWS_PER_THREAD = 300;
+
+    @Test
+    void sharedFakerNeverHandsOutAValueTwice() throws Exception {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 5);
+        Faker faker = new Faker(service, new FakerContext(Locale.ENGLISH, new RandomService(new Random())));
+
+        Set<String> drawn = drawConcurrently(() -> faker.name().firstName());
+
+        assertThat(drawn).hasSize(THREADS * DRAWS_PER_THREAD);
+        // Loads are single-flight and only happen once the pool is empty, so no batch is wasted.
+        assertThat(service.getCalls("name.first_name")).isEqualTo(THREADS * DRAWS_PER_THREAD / 10);
+    }
+
+    @Test
+    void backgroundRefillsDoNotRace() throws Exception {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 2);
+        service.setRefillThreshold(5);
+        Faker faker = new Faker(service, new FakerContext(Locale.ENGLISH, new RandomService(new Random())));
+
+        Set<String> drawn = drawConcurrently(() -> faker.name().lastName());
+
+        assertThat(drawn).hasSize(THREADS * DRAWS_PER_THREAD);
+    }
+
+    private Set<String> drawConcurrently(Callable<String> draw) throws Exception {
+        Set<String> drawn = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < DRAWS_PER_THREAD; i++) {
+                        String value = draw.call();
+                        assertThat(value).isNotNull();
+                        assertThat(drawn.add(value)).as("duplicate value %s", value).isTrue();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return drawn;
+    }
+}
@@ -0,0 +1,623 @@
+package net.datafaker.service.llm;
+
+import net.datafaker.Faker;
+import net.datafaker.providers.base.Name;
+import net.datafaker.service.FakerContext;
+import net.datafaker.service.RandomService;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LlmFakeValuesServiceTest {
+
+    private final FakerContext context = new FakerContext(Locale.ENGLISH, new RandomService(new Random()));
+
+    @Test
+    void valuesAreHandedOutOnlyOnceByDefault() {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 0);
+
+        Set<String> drawn = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            drawn.add(service.resolve("name.first_name", null, context));
+        }
+
+        assertThat(drawn).hasSize(100);
+        assertThat(service.getCalls("name.first_name")).isEqualTo(10);
+    }
+
+    @Test
+    void reusedValuesOnlyCallTheModelOnce() {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 0);
+        service.setReuseValues(true);
+
+        Set<String> drawn = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            drawn.add(service.resolve("name.first_name", null, context));
+        }
+
+        assertThat(drawn).hasSizeLessThanOrEqualTo(10);
+        assertThat(service.getCalls("name.first_name")).isEqualTo(1);
+    }
+
+    @Test
+    void drawingCachedValuesDoesNotAllocate() {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(1000, 0);
+        service.setReuseValues(true);
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        for (int i = 0; i < 20_000; i++) {
+            service.resolve("name.first_name", null, context);
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 10_000; i++) {
+            service.resolve("name.first_name", null, context);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        // Any allocation per draw would add up to at least 16 bytes per draw
+        assertThat(allocated).isLessThan(10_000);
+    }
+
+    @Test
+    void poolsAreRefilledInTheBackgroundBelowTheThreshold() throws Exception {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 300);
+        service.setRefillThreshold(5);
+
+        // The first draw waits for the model, the sixth leaves 4 values, which starts the refill
+        for (int i = 0; i < 6; i++) {
+            service.resolve("name.first_name", null, context);
+        }
+        for (int i = 0; i < 100 && service.getRequests() < 2; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(service.getRequests()).isEqualTo(2);
+
+        // The values left are handed out while the refill is in flight, which is only started once
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            assertThat(service.resolve("name.first_name", null, context)).startsWith("name.first_name-");
+        }
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(150));
+        assertThat(service.getRequests()).isEqualTo(2);
+
+        // The next value comes from the refill, without another request
+        assertThat(service.resolve("name.first_name", null, context)).matches("name\\.first_name-(1[1-9]|20)");
+        assertThat(service.getRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void metricsAreExposedPerKeyAndModel() throws Exception {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 0);
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        JmxLlmMetrics metrics = new JmxLlmMetrics(server);
+        service.setMetrics(metrics);
+
+        for (int i = 0; i < 15; i++) {
+            service.resolve("name.first_name", null, context);
+        }
+        service.prefetch(List.of("address.city", "address.country"), context);
+
+        LlmStatsMXBean key = metrics.getKeyStats("fake", "name.first_name");
+        assertThat(key.getMisses()).isEqualTo(2);
+        assertThat(key.getHits()).isEqualTo(13);
+        assertThat(key.getRequests()).isEqualTo(2);
+        assertThat(key.getPoolDepth()).isEqualTo(5);
+        assertThat(key.getCompletionTokens()).isPositive();
+        // The first request may be slower, so the latencies don't have to end up in the same bucket
+        assertThat(Arrays.stream(key.getLatencyHistogram()).sum()).isEqualTo(2);
+
+        LlmStatsMXBean model = metrics.getModelStats("fake");
+        assertThat(model.getRequests()).isEqualTo(3);
+        assertThat(model.getPoolDepth()).isEqualTo(25);
+        assertThat(model.getTotalTokens()).isEqualTo(key.getTotalTokens()
+                + metrics.getKeyStats("fake", "address.city").getTotalTokens()
+                + metrics.getKeyStats("fake", "address.country").getTotalTokens());
+
+        ObjectName name = new ObjectName(JmxLlmMetrics.DOMAIN + ":type=Key,model=\"fake\",name=\"name.first_name\"");
+        assertThat(server.getAttribute(name, "Hits")).isEqualTo(13L);
+    }
+
+    @Test
+    void failuresReturnNullByDefault() {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 0);
+        service.setFailures(1);
+
+        assertThat(service.resolve("name.first_name", null, context)).isNull();
+    }
+
+    @Test
+    void failuresCanBeThrown() {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 0);
+        service.setFailOnError(true);
+        service.setFailures(1);
+
+        assertThatThrownBy(() -> service.resolve("name.first_name", null, context))
+                .isInstanceOf(IllegalStateException.class)
+                .hasCauseInstanceOf(ModelRequestException.class);
+    }
+
+    @Test
+    void rateLimitedRequestsAreRetriedByTheScheduler() {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 0);
+        service.setRequestScheduler(new RequestScheduler(0, 0, 2, 3, Duration.ofMillis(1), Duration.ofMillis(10)));
+        service.setFailures(2);
+
+        assertThat(service.resolve("name.first_name", null, context)).startsWith("name.first_name-");
+        assertThat(service.getRequests()).isEqualTo(3);
+    }
+
+    @Test
+    void expressionsAreResolvedFromTheModelUsingASingleRequest() {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 0);
+        Faker faker = new Faker(service, context);
+
+        assertThat(faker.expression("#{Name.first_name} #{Name.last_name}"))
+                .matches("name\\.first_name-\\d+ name\\.last_name-\\d+");
+        assertThat(service.getRequests()).isEqualTo(1);
+
+        assertThat(faker.expression("#{Name.firstName} (#{number.number_between '1','10'})"))
+                .matches("name\\.first_name-\\d+ \\(\\d\\)");
+        assertThat(faker.resolve("name.last_name")).startsWith("name.last_name-");
+        assertThat(service.getRequests()).isEqualTo(1);
+    }
+
+    @Test
+    void junkAndDuplicatesAreDroppedAndToppedUp() throws Exception {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(7, 0);
+        JmxLlmMetrics metrics = new JmxLlmMetrics(MBeanServerFactory.newMBeanServer());
+        service.setMetrics(metrics);
+        service.setValueFilter("name.first_name", ValueFilter.matching("[\\w.-]+"));
+        service.addAnswer("[\"1. Alice\", \"\\\"Bob\\\"\", \"\", \"alice\", \"- Carol\", \"Carol\", \"Dave 2\"]");
+
+        Set<String> drawn = new HashSet<>();
+        drawn.add(service.resolve("name.first_name", null, context));
+
+        // The 4 dropped values are asked for in the background
+        for (int i = 0; i < 100 && service.snapshot().getValues(Locale.ENGLISH, "name.first_name").size() < 6; i++) {
+            Thread.sleep(10);
+        }
+        drawn.addAll(service.snapshot().getValues(Locale.ENGLISH, "name.first_name"));
+        assertThat(drawn).containsExactlyInAnyOrder("Alice", "Bob", "Carol",
+                "name.first_name-1", "name.first_name-2", "name.first_name-3", "name.first_name-4");
+        assertThat(service.getRequests()).isEqualTo(2);
+
+        LlmStatsMXBean stats = metrics.getKeyStats("fake", "name.first_name");
+        assertThat(stats.getGeneratedValues()).isEqualTo(11);
+        assertThat(stats.getDuplicateValues()).isEqualTo(2);
+        assertThat(stats.getInvalidValues()).isEqualTo(2);
+        assertThat(stats.getDuplicateRate()).isEqualTo(2.0 / 11);
+    }
+
+    @Test
+    void duplicatesAreUsedWhenTheModelRunsOutOfValues() {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(2, 0);
+        service.addAnswer("[\"Red\", \"Blue\"]");
+        service.addAnswer("[\"red\", \"Blue\"]");
+
+        for (int i = 0; i < 2; i++) {
+            assertThat(service.resolve("color.name", null, context)).isIn("Red", "Blue");
+        }
+        assertThat(service.resolve("color.name", null, context)).isIn("red", "Blue");
+    }
+
+    @Test
+    void recordsAreGeneratedUsingASingleRequestAndDrawnAsAWhole() {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 0);
+        List<String> keys = List.of("name.first_name", "name.last_name", "address.city");
+
+        Set<String> numbers = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            Map<String, String> record = service.resolveRecord(keys, context);
+
+            assertThat(record).containsOnlyKeys(keys);
+            String number = record.get("name.first_name").substring("name.first_name-".length());
+            assertThat(record.values()).containsExactly(
+                    "name.first_name-" + number, "name.last_name-" + number, "address.city-" + number);
+            numbers.add(number);
+        }
+
+        assertThat(numbers).hasSize(10);
+        assertThat(service.getRequests()).isEqualTo(1);
+    }
+
+    @Test
+    void reusedRecordsAreRefreshedAfterAmountOfDraws() throws Exception {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 0);
+        service.setReuseValues(true);
+        service.setRefreshAfterDraws(100);
+        List<String> keys = List.of("name.first_name", "name.last_name");
+
+        for (int i = 0; i < 99; i++) {
+            service.resolveRecord(keys, context);
+        }
+        assertThat(service.getRequests()).isEqualTo(1);
+        service.resolveRecord(keys, context);
+
+        // The refresh happens in the background
+        for (int i = 0; i < 100 && service.getRequests() < 2; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(service.getRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void slowModelFallsBackToTheBuiltInValues() throws Exception {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 500);
+        service.setLatencyBudget(Duration.ofMillis(50));
+        Faker faker = new Faker(service, context);
+
+        long start = System.nanoTime();
+        String fallback = faker.name().firstName();
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(400));
+        assertThat(fallback).isNotEmpty().doesNotStartWith("name.first_name-");
+
+        // The model keeps generating values in the background
+        for (int i = 0; i < 100 && service.getCalls("name.first_name") == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(faker.name().firstName()).startsWith("name.first_name-");
+    }
+
+    @Test
+    void failingModelIsNotCalledForEveryMiss() {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 0);
+        JmxLlmMetrics metrics = new JmxLlmMetrics(MBeanServerFactory.newMBeanServer());
+        service.setMetrics(metrics);
+        service.setLatencyBudget(Duration.ofSeconds(1));
+        service.setFailures(1);
+        Faker faker = new Faker(service, context);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(faker.name().firstName()).isNotEmpty().doesNotStartWith("name.first_name-");
+        }
+
+        assertThat(service.getRequests()).isEqualTo(1);
+        assertThat(metrics.getKeyStats("fake", "name.first_name").getFallbacks()).isEqualTo(10);
+    }
+
+    @Test
+    void sameSeedDrawsTheSameValuesFromASnapshot() throws Exception {
+        FakeLlmFakeValuesService generating = new FakeLlmFakeValuesService(20, 0);
+        generating.prefetch(List.of("name.first_name"), context);
+        PoolSnapshot snapshot = generating.snapshot();
+
+        FakeLlmFakeValuesService first = new FakeLlmFakeValuesService(20, 0);
+        first.setReuseValues(true);
+        first.loadSnapshot(snapshot);
+        FakeLlmFakeValuesService second = new FakeLlmFakeValuesService(20, 0);
+        second.setReuseValues(true);
+        second.loadSnapshot(snapshot);
+
+        // Every thread draws from its own stream, so the order in which the threads run doesn't matter
+        RandomStreams streams = new RandomStreams(42);
+        List<List<String>> sequential = new ArrayList<>();
+        for (int stream = 0; stream < 4; stream++) {
+            sequential.add(draw(first, streams.context(Locale.ENGLISH, stream), 50));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<String>>> concurrent = new ArrayList<>();
+            for (int stream = 0; stream < 4; stream++) {
+                FakerContext streamContext = streams.context(Locale.ENGLISH, stream);
+                concurrent.add(executor.submit(() -> draw(second, streamContext, 50)));
+            }
+            for (int stream = 0; stream < 4; stream++) {
+                assertThat(concurrent.get(stream).get()).isEqualTo(sequential.get(stream));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(sequential.get(0)).isNotEqualTo(sequential.get(1));
+        assertThat(first.getRequests()).isZero();
+        assertThat(second.getRequests()).isZero();
+    }
+
+    private static List<String> draw(FakeLlmFakeValuesService service, FakerContext context, int amount) {
+        List<String> drawn = new ArrayList<>();
+        for (int i = 0; i < amount; i++) {
+            drawn.add(service.resolve("name.first_name", null, context));
+        }
+        return drawn;
+    }
+
+    @Test
+    void reusedValuesAreRefreshedAfterAmountOfDraws() throws Exception {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 0);
+        service.setReuseValues(true);
+        service.setRefreshAfterDraws(100);
+
+        for (int i = 0; i < 100; i++) {
+            service.resolve("name.first_name", null, context);
+        }
+
+        // The refresh happens in the background
+        for (int i = 0; i < 100 && service.getCalls("name.first_name") < 2; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(service.getCalls("name.first_name")).isEqualTo(2);
+    }
+
+    @Test
+    void generateInBulk() {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 0);
+
+        List<String> values = service.generate("name.first_name", 95, context);
+
+        assertThat(values).hasSize(95).doesNotHaveDuplicates();
+        assertThat(service.getCalls("name.first_name")).isEqualTo(10);
+    }
+
+    @Test
+    void prefetchUsesASingleRequestForAllKeys() {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 0);
+
+        service.prefetch(List.of("address.street_name", "address.city", "address.zip_code"), context);
+
+        assertThat(service.getRequests()).isEqualTo(1);
+        assertThat(service.resolve("address.street_name", null, context)).startsWith("address.street_name-");
+        assertThat(service.resolve("address.city", null, context)).startsWith("address.city-");
+        assertThat(service.resolve("address.zip_code", null, context)).startsWith("address.zip_code-");
+        assertThat(service.getRequests()).isEqualTo(1);
+    }
+
+    @Test
+    void keysRequestedWithinTheBatchWindowUseASingleRequest() throws Exception {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 0);
+        service.setBatchWindow(Duration.ofMillis(200));
+
+        List<String> keys = List.of("address.street_name", "address.city", "address.zip_code");
+        ExecutorService executor = Executors.newFixedThreadPool(keys.size());
+        try {
+            List<Future<String>> values = new ArrayList<>();
+            for (String key : keys) {
+                values.add(executor.submit(() -> service.resolve(key, null, context)));
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                assertThat(values.get(i).get()).startsWith(keys.get(i) + "-");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(service.getRequests()).isEqualTo(1);
+    }
+
+    @Test
+    void changingTheBatchWindowSendsTheWaitingKeys() throws Exception {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 0);
+        service.setBatchWindow(Duration.ofHours(1));
+        CompletableFuture<String> value = service.resolveAsync("address.city", context);
+        Thread.sleep(50);
+        assertThat(value).isNotDone();
+
+        service.setBatchWindow(Duration.ZERO);
+
+        assertThat(value.get(1, TimeUnit.SECONDS)).startsWith("address.city-");
+        service.close();
+        assertThat(service.resolve("address.street_name", null, context)).startsWith("address.street_name-");
+    }
+
+    @Test
+    void resolveAsync() throws Exception {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 50);
+
+        CompletableFuture<String> value = service.resolveAsync("name.first_name", context);
+
+        assertThat(value.get(1, TimeUnit.SECONDS)).startsWith("name.first_name-");
+        assertThat(service.resolveAsync("name.first_name", context)).isCompleted();
+    }
+
+    @Test
+    void publisherEmitsRequestedAmountOfValues() throws Exception {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 0);
+
+        List<String> received = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(25);
+        service.publisher("name.first_name", context).subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(25);
+            }
+
+            @Override
+            public void onNext(String item) {
+                received.add(item);
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        assertThat(done.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(received).hasSize(25).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void streamedValuesCanBeUsedBeforeTheWholeBatchIsGenerated() throws Exception {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(100, 0);
+        service.setStreaming(true);
+
+        assertThat(service.resolve("name.first_name", null, context)).startsWith("name.first_name-");
+        assertThat(service.isStreaming()).isTrue();
+
+        Set<String> drawn = new HashSet<>();
+        for (int i = 0; i < 99; i++) {
+            drawn.add(service.resolve("name.first_name", null, context));
+        }
+        assertThat(drawn).hasSize(99).doesNotContainNull();
+        assertThat(service.getCalls("name.first_name")).isEqualTo(1);
+    }
+
+    @Test
+    void localesHaveTheirOwnValues() {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(20, 0);
+        FakerContext german = new FakerContext(Locale.GERMAN, new RandomService(new Random()));
+        FakerContext dutch = new FakerContext(Locale.forLanguageTag("nl"), new RandomService(new Random()));
+
+        Set<String> germanValues = new HashSet<>();
+        Set<String> dutchValues = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            germanValues.add(service.resolve("address.city", null, german));
+            dutchValues.add(service.resolve("address.city", null, dutch));
+        }
+
+        assertThat(germanValues).hasSize(10).doesNotContainAnyElementsOf(dutchValues);
+        assertThat(service.getRequests()).isEqualTo(2);
+        assertThat(service.snapshot().getLocales()).containsExactlyInAnyOrder(Locale.GERMAN, Locale.forLanguageTag("nl"));
+    }
+
+    @Test
+    void batchLocalesAreGeneratedUsingASingleRequest() {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 0);
+        Locale dutch = Locale.forLanguageTag("nl");
+        service.setBatchLocales(List.of(Locale.GERMAN, dutch, Locale.FRENCH));
+        FakerContext german = new FakerContext(Locale.GERMAN, new RandomService(new Random()));
+
+        assertThat(service.resolve("address.city", null, german)).startsWith("address.city-de-");
+        for (int i = 0; i < 10; i++) {
+            assertThat(service.resolve("address.city", null, new FakerContext(dutch, new RandomService(new Random()))))
+                    .startsWith("address.city-nl-");
+            assertThat(service.resolve("address.city", null, new FakerContext(Locale.FRENCH, new RandomService(new Random()))))
+                    .startsWith("address.city-fr-");
+        }
+        assertThat(service.getRequests()).isEqualTo(1);
+
+        // Only the locales which ran out are generated again
+        assertThat(service.resolve("address.city", null, new FakerContext(dutch, new RandomService(new Random()))))
+                .startsWith("address.city-nl-");
+        assertThat(service.getRequests()).isEqualTo(2);
+        assertThat(service.snapshot().getValues(Locale.GERMAN, "address.city")).hasSize(9);
+    }
+
+    @Test
+    void poolDepthIsTheSumOfAllLocales() {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 0);
+        JmxLlmMetrics metrics = new JmxLlmMetrics(MBeanServerFactory.newMBeanServer());
+        service.setMetrics(metrics);
+        service.setBatchLocales(List.of(Locale.GERMAN, Locale.FRENCH));
+
+        service.resolve("address.city", null, new FakerContext(Locale.GERMAN, new RandomService(new Random())));
+        service.resolve("address.city", null, new FakerContext(Locale.FRENCH, new RandomService(new Random())));
+
+        // Both locales have 9 values left, the last locale drawn from doesn't overwrite the other one
+        assertThat(metrics.getKeyStats("fake", "address.city").getPoolDepth()).isEqualTo(18);
+        assertThat(metrics.getModelStats("fake").getPoolDepth()).isEqualTo(18);
+    }
+
+    @Test
+    void warmUpFillsThePoolsConcurrently() throws Exception {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 100);
+        List<String> keys = List.of("name.first_name", "name.last_name", "address.city", "address.street_name");
+
+        long start = System.nanoTime();
+        service.warmUp(keys, 25, context).get(5, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - start;
+
+        // 3 requests per key, which would take 1.2 seconds one after the other
+        assertThat(service.getRequests()).isEqualTo(12);
+        assertThat(Duration.ofNanos(elapsed)).isLessThan(Duration.ofMillis(1000));
+        for (String key : keys) {
+            assertThat(service.snapshot().getValues(Locale.ENGLISH, key)).hasSize(25);
+            assertThat(service.resolve(key, null, context)).startsWith(key + "-");
+        }
+        assertThat(service.getRequests()).isEqualTo(12);
+    }
+
+    @Test
+    void warmUpStopsWhenTheModelComesUpWithNothingNew() throws Exception {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(2, 0);
+        service.addAnswer("[\"Red\", \"Blue\"]");
+        for (int i = 0; i < 5; i++) {
+            service.addAnswer("[\"red\", \"Blue\"]");
+        }
+
+        service.warmUp(List.of("color.name"), 10, context).get(5, TimeUnit.SECONDS);
+
+        assertThat(service.snapshot().getValues(Locale.ENGLISH, "color.name")).containsExactlyInAnyOrder("Red", "Blue");
+        assertThat(service.getRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void warmUpFindsTheKeysOfAProvider() throws Exception {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(5, 0);
+        new Faker(service, context);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            service.setWarmUpExecutor(executor);
+            service.warmUp(Name.class, 5, context).get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(service.snapshot().getKeys(Locale.ENGLISH))
+                .contains("name.first_name", "name.last_name")
+                .doesNotContain("name.title", "name.firstName");
+    }
+
+    @Test
+    void arenaStorageDrawsTheSameValues() {
+        FakeLlmFakeValuesService lists = new FakeLlmFakeValuesService(50, 0);
+        FakeLlmFakeValuesService arenas = new FakeLlmFakeValuesService(50, 0);
+        arenas.setPoolStorage(() -> PoolStorage.arena(true));
+
+        RandomStreams streams = new RandomStreams(7);
+        assertThat(draw(arenas, streams.context(Locale.ENGLISH, 0), 120))
+                .isEqualTo(draw(lists, streams.context(Locale.ENGLISH, 0), 120));
+    }
+
+    @Test
+    void slowColdRequestsAreHedged() {
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(5, 0);
+        FakeLlmFakeValuesService cheaper = new FakeLlmFakeValuesService(5, 0);
+        JmxLlmMetrics metrics = new JmxLlmMetrics(MBeanServerFactory.newMBeanServer());
+        service.setMetrics(metrics);
+        assertThatThrownBy(() -> service.setHedging(HedgingPolicy.DEFAULT, new FakeLlmFakeValuesService(5, 0) {}))
+                .isInstanceOf(IllegalArgumentException.class);
+        service.setHedging(new HedgingPolicy(0.95, Duration.ofMillis(20), 0.5), cheaper);
+        for (int i = 0; i < 30; i++) {
+            service.resolve("test.key_" + i, null, context);
+        }
+        assertThat(cheaper.getRequests()).isZero();
+
+        service.setLatency(2000);
+        long start = System.nanoTime();
+        assertThat(service.resolve("name.first_name", null, context)).startsWith("name.first_name-");
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(1000));
+        assertThat(cheaper.getRequests()).isEqualTo(1);
+        LlmStatsMXBean stats = metrics.getKeyStats("fake", "name.first_name");
+        assertThat(stats.getHedgedRequests()).isEqualTo(1);
+        assertThat(stats.getHedgeWins()).isEqualTo(1);
+        // The tokens of the hedged request count for the key, the slow request is still running
+        assertThat(stats.getCompletionTokens()).isPositive();
+    }
+}
@@ -0,0 +1,90 @@
+package net.datafaker.service.llm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PoolSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writtenSnapshotIsReadBack() throws Exception {
+        PoolSnapshot snapshot = new PoolSnapshot(Map.of(
+                Locale.ENGLISH, Map.of(
+                        "name.first_name", List.of("Alice", "Chloé", "<Bob>"),
+                        "address.city", List.of("Berlin")),
+                Locale.GERMANY, Map.of(
+                        "address.city", List.of("München"))));
+        Path file = directory.resolve("pools").resolve("snapshot.json");
+
+        snapshot.write(file);
+        PoolSnapshot read = PoolSnapshot.read(file);
+
+        assertThat(read).isEqualTo(snapshot);
+        assertThat(read.getLocales()).containsExactlyInAnyOrder(Locale.ENGLISH, Locale.GERMANY);
+        assertThat(read.getKeys(Locale.ENGLISH)).containsExactly("address.city", "name.first_name");
+        assertThat(read.getValues(Locale.ENGLISH, "name.first_name")).containsExactly("Alice", "Chloé", "<Bob>");
+        assertThat(read.getValues(Locale.GERMANY, "address.city")).containsExactly("München");
+        assertThat(read.getValues(Locale.GERMANY, "name.first_name")).isEmpty();
+        assertThat(read.getValues(Locale.FRENCH, "address.city")).isEmpty();
+    }
+
+    @Test
+    void sameValuesGiveTheSameFile() throws Exception {
+        FakeLlmFakeValuesService first = new FakeLlmFakeValuesService(10, 0);
+        first.prefetch(List.of("name.first_name", "address.city"), new RandomStreams(1).context(Locale.ENGLISH, 0));
+        PoolSnapshot snapshot = first.snapshot();
+
+        List<String> cities = new ArrayList<>(snapshot.getValues(Locale.ENGLISH, "address.city"));
+        Collections.reverse(cities);
+        FakeLlmFakeValuesService second = new FakeLlmFakeValuesService(10, 0);
+        second.loadSnapshot(new PoolSnapshot(Map.of(Locale.ENGLISH, Map.of(
+                "address.city", cities,
+                "name.first_name", snapshot.getValues(Locale.ENGLISH, "name.first_name")))));
+
+        first.snapshot().write(directory.resolve("first.json"));
+        second.snapshot().write(directory.resolve("second.json"));
+        assertThat(Files.readString(directory.resolve("second.json")))
+                .isEqualTo(Files.readString(directory.resolve("first.json")));
+    }
+
+    @Test
+    void yamlReplacesTheBuiltInValuesOfTheKeys() throws Exception {
+        PoolSnapshot snapshot = new PoolSnapshot(Map.of(
+                Locale.ENGLISH, Map.of("name.first_name", List.of("Alice", "Chloé")),
+                Locale.GERMAN, Map.of("address.city_prefix", List.of("Unter"))));
+
+        snapshot.writeYaml(directory);
+
+        // English has a file per provider, other locales a single file
+        Map<String, Object> name = faker(directory.resolve("en/name.yml"), "en", "name");
+        assertThat(name.get("first_name")).isEqualTo(List.of("Alice", "Chloé"));
+        assertThat((List<?>) name.get("last_name")).isNotEmpty();
+        Map<String, Object> address = faker(directory.resolve("de.yml"), "de", "address");
+        assertThat(address.get("city_prefix")).isEqualTo(List.of("Unter"));
+        assertThat((List<?>) address.get("city_suffix")).isNotEmpty();
+        assertThat(faker(directory.resolve("de.yml"), "de", "name")).isNotEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> faker(Path file, String locale, String provider) throws Exception {
+        try (Reader reader = Files.newBufferedReader(file)) {
+            Map<String, Object> content = new Yaml().load(reader);
+            Map<String, Object> faker = (Map<String, Object>) ((Map<String, Object>) content.get(locale)).get("faker");
+            return (Map<String, Object>) faker.get(provider);
+        }
+    }
+}
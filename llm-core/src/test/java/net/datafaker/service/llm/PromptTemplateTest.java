@@ -0,0 +1,47 @@
+package net.datafaker.service.llm;
+
+import net.datafaker.service.FakerContext;
+import net.datafaker.service.RandomService;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PromptTemplateTest {
+
+    private final FakerContext context = new FakerContext(Locale.GERMAN, new RandomService(new Random()));
+
+    @Test
+    void placeholdersAreFilledIn() {
+        PromptTemplate.Prompt prompt = PromptTemplate.of("List {amount} {language} {key} ({rawKey}), {amount} in total.")
+                .compile("name.first_name", "first name", "German");
+
+        assertThat(prompt.render(5)).isEqualTo("List 5 German first name (name.first_name), 5 in total.");
+        assertThat(prompt.render(20)).isEqualTo("List 20 German first name (name.first_name), 20 in total.");
+    }
+
+    @Test
+    void otherBracesAreLeftAlone() {
+        PromptTemplate.Prompt prompt = PromptTemplate.of("Answer with {\"values\": [...]} for {key}{")
+                .compile("name.first_name", "first name", "German");
+
+        assertThat(prompt.render(5)).isEqualTo("Answer with {\"values\": [...]} for first name{");
+    }
+
+    @Test
+    void templateCanBeReplacedPerProvider() {
+        String language = Locale.GERMAN.getDisplayLanguage();
+        FakeLlmFakeValuesService service = new FakeLlmFakeValuesService(10, 0);
+        service.setPromptTemplate(PromptTemplate.of("{amount} {language} {key}"));
+        service.setPromptTemplate("Address", PromptTemplate.of("{amount} {language} {key} in Berlin"));
+
+        assertThat(service.createPrompt("name.first_name", 10, context)).isEqualTo("10 " + language + " first name");
+        assertThat(service.createPrompt("address.street_name", 10, context)).isEqualTo("10 " + language + " street name in Berlin");
+
+        service.setPromptTemplate("address", null);
+
+        assertThat(service.createPrompt("address.street_name", 10, context)).isEqualTo("10 " + language + " street name");
+    }
+}
@@ -0,0 +1,83 @@
+package net.datafaker.service.llm;
+
+import net.datafaker.service.llm.RequestScheduler.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RequestSchedulerTest {
+
+    @Test
+    void retryableFailuresAreRetried() {
+        RequestScheduler scheduler = new RequestScheduler(0, 0, 1, 3, Duration.ofMillis(1), Duration.ofMillis(10));
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = scheduler.submit(Priority.FOREGROUND, 0, () -> attempts.incrementAndGet() < 3
+                ? CompletableFuture.<String>failedFuture(new ModelRequestException("Too many requests", 429, null))
+                : CompletableFuture.completedFuture("done")).join();
+
+        assertThat(result).isEqualTo("done");
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void otherFailuresAreNotRetried() {
+        RequestScheduler scheduler = new RequestScheduler(0, 0, 1, 3, Duration.ofMillis(1), Duration.ofMillis(10));
+        AtomicInteger attempts = new AtomicInteger();
+
+        CompletableFuture<String> result = scheduler.submit(Priority.FOREGROUND, 0, () -> {
+            attempts.incrementAndGet();
+            return CompletableFuture.failedFuture(new ModelRequestException("Unauthorized", 401, null));
+        });
+
+        assertThatThrownBy(result::join)
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(ModelRequestException.class);
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void foregroundRequestsGoFirst() {
+        RequestScheduler scheduler = new RequestScheduler(0, 0, 1);
+        List<String> started = new CopyOnWriteArrayList<>();
+        CompletableFuture<String> blocking = new CompletableFuture<>();
+
+        scheduler.submit(Priority.FOREGROUND, 0, () -> blocking);
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (String name : List.of("refill-1", "miss-1", "refill-2", "miss-2")) {
+            Priority priority = name.startsWith("miss") ? Priority.FOREGROUND : Priority.BACKGROUND;
+            results.add(scheduler.submit(priority, 0, () -> {
+                started.add(name);
+                return CompletableFuture.completedFuture(name);
+            }));
+        }
+        blocking.complete("first");
+        results.forEach(CompletableFuture::join);
+
+        assertThat(started).containsExactly("miss-1", "miss-2", "refill-1", "refill-2");
+    }
+
+    @Test
+    void tokensPerMinuteAreLimited() {
+        // 1000 tokens per second, after a burst of 60000
+        RequestScheduler scheduler = new RequestScheduler(0, 60_000, 10);
+
+        long start = System.nanoTime();
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 602; i++) {
+            results.add(scheduler.submit(Priority.FOREGROUND, 100, () -> CompletableFuture.completedFuture(1)));
+        }
+        results.forEach(CompletableFuture::join);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(150));
+    }
+}
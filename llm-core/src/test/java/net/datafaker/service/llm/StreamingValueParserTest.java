@@ -0,0 +1,56 @@
+package net.datafaker.service.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingValueParserTest {
+
+    private final List<String> values = new ArrayList<>();
+    private final StreamingValueParser parser = new StreamingValueParser(values::add);
+
+    @Test
+    void valueIsPassedOnAsSoonAsItsClosingQuoteArrives() {
+        parser.feed("[\"Ali");
+        assertThat(values).isEmpty();
+
+        parser.feed("ce\", \"B");
+        assertThat(values).containsExactly("Alice");
+
+        parser.feed("ob\"]");
+        assertThat(values).containsExactly("Alice", "Bob");
+    }
+
+    @Test
+    void fieldNamesAreNotValues() {
+        parser.feed("{\"values\": [\"Alice\", \"Bob\"]}");
+
+        assertThat(values).containsExactly("Alice", "Bob");
+    }
+
+    @Test
+    void stringsInsideObjectsInAnArrayAreNotValues() {
+        parser.feed("[{\"name\": \"Alice\"}, \"Bob\"]");
+
+        assertThat(values).containsExactly("Bob");
+    }
+
+    @Test
+    void codeFencesAreIgnored() {
+        parser.feed("```json\n[\"Alice\",\n\"Bob\"]\n```");
+
+        assertThat(values).containsExactly("Alice", "Bob");
+    }
+
+    @Test
+    void escapesAreDecodedAcrossChunks() {
+        parser.feed("[\"Chlo\\u00");
+        parser.feed("e9 \\\"Clo\\");
+        parser.feed("\\\"]");
+
+        assertThat(values).containsExactly("Chloé \"Clo\\");
+    }
+}
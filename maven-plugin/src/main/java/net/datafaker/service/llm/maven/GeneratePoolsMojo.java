@@ -0,0 +1,212 @@
+package net.datafaker.service.llm.maven;
+
+import net.datafaker.Faker;
+import net.datafaker.providers.base.AbstractProvider;
+import net.datafaker.service.FakerContext;
+import net.datafaker.service.RandomService;
+import net.datafaker.service.llm.LlmFakeValuesService;
+import net.datafaker.service.llm.LlmFakeValuesServiceFactory;
+import net.datafaker.service.llm.PoolSnapshot;
+import org.apache.maven.model.Resource;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Generates values using a model at build time, and writes them as the YAML resources Datafaker loads its values
+ * from. The directory is added to the test resources, so tests use the generated values through a plain
+ * {@code Faker}, without calling any model.
+ * <p>
+ * The service is found by name, so the module of the service has to be a dependency of the plugin, such as
+ * openai-codex for "openai", or ollama-api for "ollama".
+ */
+@Mojo(name = "generate-pools", defaultPhase = LifecyclePhase.GENERATE_TEST_RESOURCES, threadSafe = true)
+public class GeneratePoolsMojo extends AbstractMojo {
+
+    private static final String BASE_PROVIDERS = "net.datafaker.providers.base.";
+
+    /**
+     * The name of the service which generates the values, such as "openai" or "ollama".
+     */
+    @Parameter(property = "datafaker.llm.service", required = true)
+    private String service;
+
+    /**
+     * The configuration of the service, such as the "model" and the "endpoint" of the model.
+     */
+    @Parameter
+    private Map<String, String> properties;
+
+    /**
+     * The keys to generate values for, such as "name.first_name".
+     */
+    @Parameter
+    List<String> keys;
+
+    /**
+     * The providers to generate the values of all keys for, such as "Name", or the fully qualified name of a provider
+     * which isn't one of the base providers.
+     */
+    @Parameter
+    private List<String> providers;
+
+    /**
+     * The language tags of the locales to generate values for.
+     */
+    @Parameter(defaultValue = "en")
+    List<String> locales;
+
+    /**
+     * The amount of values to generate per key and locale.
+     */
+    @Parameter(property = "datafaker.llm.depth", defaultValue = "100")
+    int depth;
+
+    /**
+     * How long the generation of all values may take.
+     */
+    @Parameter(property = "datafaker.llm.timeoutSeconds", defaultValue = "600")
+    int timeoutSeconds;
+
+    /**
+     * Whether to write the values when the model generated fewer values than the depth for some keys, such as when
+     * the model ran out of new values. The short keys are logged either way.
+     */
+    @Parameter(property = "datafaker.llm.allowShortPools", defaultValue = "false")
+    boolean allowShortPools;
+
+    @Parameter(defaultValue = "${project.build.directory}/generated-test-resources/datafaker-llm", required = true)
+    File outputDirectory;
+
+    @Parameter(property = "datafaker.llm.skip", defaultValue = "false")
+    private boolean skip;
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject project;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info("Skipping the generation of values");
+            if (outputDirectory.isDirectory()) {
+                addTestResource();
+            }
+            return;
+        }
+
+        LlmFakeValuesService fakeValuesService;
+        try {
+            fakeValuesService = LlmFakeValuesServiceFactory.find(service, getClass().getClassLoader())
+                    .create(properties == null ? Map.of() : properties);
+        } catch (IllegalArgumentException e) {
+            throw new MojoFailureException(e.getMessage(), e);
+        }
+        try (fakeValuesService) {
+            generate(fakeValuesService);
+        }
+        addTestResource();
+    }
+
+    void generate(LlmFakeValuesService fakeValuesService) throws MojoExecutionException, MojoFailureException {
+        // Tests shouldn't silently get fewer values than configured
+        fakeValuesService.setFailOnError(true);
+
+        Map<Locale, List<String>> localeKeys = new LinkedHashMap<>();
+        List<CompletableFuture<Void>> warmUps = new ArrayList<>();
+        for (String languageTag : locales) {
+            Locale locale = Locale.forLanguageTag(languageTag);
+            FakerContext context = new Faker(fakeValuesService, new FakerContext(locale, new RandomService())).getContext();
+            Set<String> contextKeys = new LinkedHashSet<>();
+            if (keys != null) {
+                contextKeys.addAll(keys);
+            }
+            if (providers != null) {
+                for (String provider : providers) {
+                    contextKeys.addAll(fakeValuesService.keysOf(providerClass(provider), context));
+                }
+            }
+            localeKeys.put(locale, List.copyOf(contextKeys));
+            warmUps.add(fakeValuesService.warmUp(List.copyOf(contextKeys), depth, context));
+        }
+        getLog().info("Generating " + depth + " values per key for " + locales + " using " + service);
+
+        try {
+            CompletableFuture.allOf(warmUps.toArray(CompletableFuture<?>[]::new)).get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException("Generating values failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new MojoExecutionException("Generating values took longer than " + timeoutSeconds + " seconds", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while generating values", e);
+        }
+
+        PoolSnapshot snapshot = fakeValuesService.snapshot();
+        checkDepth(snapshot, localeKeys);
+        try {
+            snapshot.writeYaml(outputDirectory.toPath());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Writing the values to " + outputDirectory + " failed", e);
+        }
+    }
+
+    /**
+     * Fails when the model generated fewer distinct values than the depth for some keys, for example because it ran out
+     * of new values, unless short pools are allowed.
+     */
+    private void checkDepth(PoolSnapshot snapshot, Map<Locale, List<String>> localeKeys) throws MojoFailureException {
+        List<String> shortKeys = new ArrayList<>();
+        localeKeys.forEach((locale, contextKeys) -> {
+            for (String key : contextKeys) {
+                int size = new HashSet<>(snapshot.getValues(locale, key)).size();
+                if (size < depth) {
+                    getLog().warn("Only " + size + " of " + depth + " values were generated for " + key + " in " + locale.toLanguageTag());
+                    shortKeys.add(key + " (" + locale.toLanguageTag() + ")");
+                }
+            }
+        });
+        if (!shortKeys.isEmpty() && !allowShortPools) {
+            throw new MojoFailureException("Fewer than " + depth + " values were generated for " + shortKeys
+                    + ", set allowShortPools to use them anyway");
+        }
+    }
+
+    private void addTestResource() {
+        Resource resource = new Resource();
+        resource.setDirectory(outputDirectory.getAbsolutePath());
+        project.addTestResource(resource);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Class<? extends AbstractProvider<?>> providerClass(String provider) throws MojoFailureException {
+        String className = provider.contains(".") ? provider : BASE_PROVIDERS + provider;
+        try {
+            Class<?> providerClass = Class.forName(className, false, getClass().getClassLoader());
+            if (!AbstractProvider.class.isAssignableFrom(providerClass)) {
+                throw new MojoFailureException(className + " is not a provider");
+            }
+            return (Class<? extends AbstractProvider<?>>) providerClass;
+        } catch (ClassNotFoundException e) {
+            throw new MojoFailureException("Provider " + provider + " not found", e);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package net.datafaker.service.llm.maven;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import net.datafaker.service.llm.LlmFakeValuesService;
+import net.datafaker.service.llm.PromptTemplate;
+import org.apache.maven.plugin.MojoFailureException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GeneratePoolsMojoTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void poolsAreWrittenAsYaml() throws Exception {
+        GeneratePoolsMojo mojo = mojo(5);
+        try (StubService service = new StubService(5, null)) {
+            mojo.generate(service);
+        }
+
+        assertThat(firstNames()).containsExactly("name-1", "name-2", "name-3", "name-4", "name-5");
+    }
+
+    @Test
+    void repeatedValuesDoNotCountTowardsTheDepth() throws Exception {
+        GeneratePoolsMojo mojo = mojo(5);
+        try (StubService service = new StubService(5, List.of("Alice", "Bob", "alice", "Bob"))) {
+            // Even without deduplication, which lets the duplicates into the pool
+            service.setDeduplicate(false);
+            assertThatThrownBy(() -> mojo.generate(service))
+                    .isInstanceOf(MojoFailureException.class)
+                    .hasMessageContaining("name.first_name (en)");
+        }
+
+        assertThat(directory.resolve("en/name.yml")).doesNotExist();
+    }
+
+    @Test
+    void shortPoolsAreWrittenWithoutDuplicatesWhenAllowed() throws Exception {
+        GeneratePoolsMojo mojo = mojo(5);
+        mojo.allowShortPools = true;
+        try (StubService service = new StubService(5, List.of("Alice", "Bob", "Alice"))) {
+            service.setDeduplicate(false);
+            mojo.generate(service);
+        }
+
+        assertThat(firstNames()).containsExactlyInAnyOrder("Alice", "Bob");
+    }
+
+    private GeneratePoolsMojo mojo(int depth) {
+        GeneratePoolsMojo mojo = new GeneratePoolsMojo();
+        mojo.keys = List.of("name.first_name");
+        mojo.locales = List.of("en");
+        mojo.depth = depth;
+        mojo.timeoutSeconds = 5;
+        mojo.outputDirectory = directory.toFile();
+        return mojo;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> firstNames() throws Exception {
+        try (Reader reader = Files.newBufferedReader(directory.resolve("en/name.yml"))) {
+            Map<String, Object> content = new Yaml().load(reader);
+            Map<String, Object> faker = (Map<String, Object>) ((Map<String, Object>) content.get("en")).get("faker");
+            return (List<String>) ((Map<String, Object>) faker.get("name")).get("first_name");
+        }
+    }
+
+    /**
+     * Stand-in for a model, which answers either numbered values, or the same values every time.
+     */
+    private static class StubService extends LlmFakeValuesService {
+
+        private final Gson gson = new Gson();
+        private final List<String> answer;
+        private int sequence;
+
+        StubService(int amountOfItemsToGenerate, List<String> answer) {
+            super(amountOfItemsToGenerate);
+            this.answer = answer;
+        }
+
+        @Override
+        protected String getModelName() {
+            return "stub";
+        }
+
+        @Override
+        protected PromptTemplate getDefaultPromptTemplate() {
+            return PromptTemplate.of("{amount}");
+        }
+
+        @Override
+        protected synchronized String complete(String prompt) {
+            if (answer != null) {
+                return gson.toJson(answer);
+            }
+            List<String> values = new ArrayList<>();
+            for (int i = Integer.parseInt(prompt); i > 0; i--) {
+                values.add("name-" + ++sequence);
+            }
+            return gson.toJson(values);
+        }
+
+        @Override
+        protected List<String> parseValues(String text) {
+            return gson.fromJson(text, new TypeToken<List<String>>() {}.getType());
+        }
+    }
+}
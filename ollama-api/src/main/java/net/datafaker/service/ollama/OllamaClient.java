@@ -0,0 +1,241 @@
+package net.datafaker.service.ollama;
+
+import com.google.gson.Gson;
+import com.google.gson.annotations.SerializedName;
+import net.datafaker.service.llm.LineSubscriber;
+import net.datafaker.service.llm.ModelRequestException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Long-lived client for the generate endpoint of the Ollama REST API. Connections are reused between requests,
+ * so a single client can (and should) be shared.
+ * <p>
+ * When multiple Ollama instances are configured, every request goes to the instance with the least outstanding
+ * requests, so generation can be spread over several machines.
+ */
+public class OllamaClient {
+
+    public static final String DEFAULT_HOST = "http://localhost:11434/";
+
+    private static final String GENERATE_ENDPOINT = "api/generate";
+    private static final String APPLICATION_JSON = "application/json";
+    private static final String DONE_REASON_LENGTH = "length";
+
+    private final HttpClient httpClient;
+
+    private final Gson gson = new Gson();
+
+    private final List<Endpoint> endpoints;
+    private final Duration requestTimeout;
+
+    /**
+     * Round-robin counter, used to spread requests over instances with the same amount of outstanding requests.
+     */
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Creates a client for a local Ollama instance.
+     */
+    public OllamaClient() {
+        this(List.of(DEFAULT_HOST));
+    }
+
+    /**
+     * @param hosts The base urls of the Ollama instances to use, such as http://localhost:11434/
+     */
+    public OllamaClient(List<String> hosts) {
+        this(hosts, Duration.ofSeconds(10), Duration.ofSeconds(30));
+    }
+
+    /**
+     * @param hosts          The base urls of the Ollama instances to use, such as http://localhost:11434/
+     * @param connectTimeout The maximum time it may take to connect to an instance.
+     * @param requestTimeout The maximum time a generation may take.
+     */
+    public OllamaClient(List<String> hosts, Duration connectTimeout, Duration requestTimeout) {
+        if (hosts.isEmpty()) {
+            throw new IllegalArgumentException("At least one Ollama host is required");
+        }
+        this.endpoints = hosts.stream()
+                .map(host -> new Endpoint(URI.create(host).resolve(GENERATE_ENDPOINT)))
+                .toList();
+        this.requestTimeout = requestTimeout;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .build();
+    }
+
+    /**
+     * Generates a completion, blocking until Ollama is done.
+     */
+    public Generation generate(String model, String prompt) throws IOException, InterruptedException {
+        Endpoint endpoint = acquire();
+        try {
+            HttpResponse<String> response = httpClient.send(createRequest(endpoint, model, prompt, false), HttpResponse.BodyHandlers.ofString());
+            return getText(response);
+        } finally {
+            endpoint.outstanding.decrementAndGet();
+        }
+    }
+
+    /**
+     * Generates a completion, without blocking the calling thread. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<Generation> generateAsync(String model, String prompt) {
+        Endpoint endpoint = acquire();
+        var request = httpClient.sendAsync(createRequest(endpoint, model, prompt, false), HttpResponse.BodyHandlers.ofString());
+        CompletableFuture<Generation> generation = request
+                .whenComplete((response, failure) -> endpoint.outstanding.decrementAndGet())
+                .thenApply(response -> {
+                    try {
+                        return getText(response);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+        // Cancelling the generation aborts the request, so Ollama stops generating
+        generation.whenComplete((response, failure) -> {
+            if (generation.isCancelled()) {
+                request.cancel(true);
+            }
+        });
+        return generation;
+    }
+
+    /**
+     * Generates a completion, passing every piece of text to the consumer as soon as Ollama has generated it.
+     * Ollama streams the completion as one json object per line, the last one contains the token counts.
+     *
+     * @return A future which completes once Ollama is done, with the token counts but without the text. Cancelling
+     * the future aborts the request.
+     */
+    public CompletableFuture<Generation> generateStreaming(String model, String prompt, Consumer<String> chunks) {
+        // Lines are parsed on a thread of the http client
+        AtomicReference<GenerateResponse> last = new AtomicReference<>();
+        var lines = new LineSubscriber(line -> {
+            if (!line.isBlank()) {
+                GenerateResponse response = gson.fromJson(line, GenerateResponse.class);
+                if (response.response != null) {
+                    chunks.accept(response.response);
+                }
+                last.set(response);
+            }
+        });
+
+        Endpoint endpoint = acquire();
+        var request = httpClient.sendAsync(createRequest(endpoint, model, prompt, true), HttpResponse.BodyHandlers.fromLineSubscriber(lines));
+        CompletableFuture<Generation> generation = request
+                .whenComplete((response, failure) -> endpoint.outstanding.decrementAndGet())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new CompletionException(ModelRequestException.of(response, ""));
+                    }
+                    return response;
+                })
+                .thenApply(response -> last.get() == null
+                        ? new Generation(null, 0, 0, false)
+                        : toGeneration(null, last.get()));
+        // Cancelling the generation stops the stream, so Ollama stops generating
+        generation.whenComplete((response, failure) -> {
+            if (generation.isCancelled()) {
+                lines.cancel();
+                request.cancel(true);
+            }
+        });
+        return generation;
+    }
+
+    /**
+     * Picks the instance with the least outstanding requests, and counts the request as outstanding.
+     */
+    private Endpoint acquire() {
+        int start = Math.floorMod(next.getAndIncrement(), endpoints.size());
+        Endpoint best = endpoints.get(start);
+        for (int i = 1; i < endpoints.size(); i++) {
+            Endpoint candidate = endpoints.get((start + i) % endpoints.size());
+            if (candidate.outstanding.get() < best.outstanding.get()) {
+                best = candidate;
+            }
+        }
+        best.outstanding.incrementAndGet();
+        return best;
+    }
+
+    private HttpRequest createRequest(Endpoint endpoint, String model, String prompt, boolean stream) {
+        return HttpRequest.newBuilder()
+                .uri(endpoint.uri)
+                .timeout(requestTimeout)
+                .header("Content-Type", APPLICATION_JSON)
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(new GenerateRequest(model, prompt, stream))))
+                .build();
+    }
+
+    private Generation getText(HttpResponse<String> response) throws IOException {
+        if (response.statusCode() != 200) {
+            throw ModelRequestException.of(response, response.body());
+        }
+        GenerateResponse generated = gson.fromJson(response.body(), GenerateResponse.class);
+        return toGeneration(generated.response, generated);
+    }
+
+    private static Generation toGeneration(String text, GenerateResponse response) {
+        return new Generation(text, response.promptEvalCount, response.evalCount, DONE_REASON_LENGTH.equals(response.doneReason));
+    }
+
+    /**
+     * A completion generated by Ollama.
+     *
+     * @param response         The generated text.
+     * @param promptTokens     The amount of tokens in the prompt, 0 if Ollama didn't report it.
+     * @param completionTokens The amount of generated tokens, 0 if Ollama didn't report it.
+     * @param truncated        Whether Ollama stopped because it reached the maximum amount of tokens.
+     */
+    public record Generation(String response, int promptTokens, int completionTokens, boolean truncated) {
+    }
+
+    private static final class Endpoint {
+        private final URI uri;
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        private Endpoint(URI uri) {
+            this.uri = uri;
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private static class GenerateRequest {
+        private final String model;
+        private final String prompt;
+        private final boolean stream;
+
+        private GenerateRequest(String model, String prompt, boolean stream) {
+            this.model = model;
+            this.prompt = prompt;
+            this.stream = stream;
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private static class GenerateResponse {
+        private String response;
+        private boolean done;
+        @SerializedName("prompt_eval_count")
+        private int promptEvalCount;
+        @SerializedName("eval_count")
+        private int evalCount;
+        @SerializedName("done_reason")
+        private String doneReason;
+    }
+}
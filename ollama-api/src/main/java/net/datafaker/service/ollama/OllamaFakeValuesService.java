@@ -1,46 +1,31 @@
 package net.datafaker.service.ollama;
 
-import com.google.common.collect.ArrayListMultimap;
 import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
-import io.github.amithkoujalgi.ollama4j.core.OllamaAPI;
-import io.github.amithkoujalgi.ollama4j.core.models.OllamaResult;
 import io.github.amithkoujalgi.ollama4j.core.types.OllamaModelType;
-import io.github.amithkoujalgi.ollama4j.core.utils.OptionsBuilder;
-import io.github.amithkoujalgi.ollama4j.core.utils.PromptBuilder;
-import net.datafaker.Faker;
-import net.datafaker.providers.base.AbstractProvider;
-import net.datafaker.providers.base.BaseFaker;
-import net.datafaker.providers.base.ProviderRegistration;
-import net.datafaker.service.FakeValuesService;
-import net.datafaker.service.FakerContext;
-import org.apache.commons.lang3.StringUtils;
+import net.datafaker.service.llm.LlmFakeValuesService;
+import net.datafaker.service.llm.PromptTemplate;
 
 import java.lang.reflect.Type;
 import java.util.List;
-import java.util.function.Supplier;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
-public class OllamaFakeValuesService extends FakeValuesService {
+public class OllamaFakeValuesService extends LlmFakeValuesService {
+
+    private static final PromptTemplate PROMPT_TEMPLATE = PromptTemplate.of("""
+            You are an generator of fake data which looks like real data.
+            Given a question, answer ONLY with json outputs.
+            Generate a single list of {amount} items of {key}
+            Generate the list in {language}
+            """);
 
     private final Gson gson = new Gson();
 
-    private final ArrayListMultimap<String, String> cache = ArrayListMultimap.create();
+    private final OllamaClient client;
 
     private final String modelName;
 
-    /**
-     * Keys are either the faker name + property (full:true), such as person + name, or only the property (full:false), such as "name".
-     * <p>
-     * Depending on your use case, one might provide better results than the other.
-     */
-    private boolean useFullKey = false;
-
-    /**
-     * Controls the amount of items to generate. These items are cached, so to speed up the process, set this to high amount,
-     * but the higher the amount, the higher the costs (don't forget to set the maxTokens to an appropriate amount too).
-     */
-    private int amountOfItemsToGenerate = 20;
-
     /**
      * Creates a new instance with sane defaults, works for most cases.
      */
@@ -52,7 +37,18 @@ public class OllamaFakeValuesService extends FakeValuesService {
      * @param modelName Name of the model to use to generate tokens.
      */
     public OllamaFakeValuesService(String modelName) {
+        this(modelName, new OllamaClient());
+    }
+
+    /**
+     * @param modelName Name of the model to use to generate tokens.
+     * @param client    The client used to talk to Ollama, for example to use other or multiple Ollama instances.
+     *                  A client can be shared between services.
+     */
+    public OllamaFakeValuesService(String modelName, OllamaClient client) {
+        super(20);
         this.modelName = modelName;
+        this.client = client;
     }
 
     /**
@@ -63,53 +59,44 @@ public class OllamaFakeValuesService extends FakeValuesService {
     }
 
     @Override
-    public String resolve(String key, Object current, BaseFaker root, FakerContext context) {
-        return super.resolve(key, current, root, context);
+    protected String getModelName() {
+        return modelName;
     }
 
     @Override
-    public String resolve(String key, AbstractProvider provider, FakerContext context) {
-        if (!cache.containsKey(key)) {
-            var prompt = createPrompt(key, context);
-
-            String host = "http://localhost:11434/";
-            OllamaAPI ollamaAPI = new OllamaAPI(host);
-            ollamaAPI.setRequestTimeoutSeconds(30);
-
-            try {
-                OllamaResult response = ollamaAPI.generate(modelName, prompt, new OptionsBuilder().build());
+    protected String complete(String prompt) throws Exception {
+        return getText(prompt, client.generate(modelName, prompt));
+    }
 
-                List<String> values = cleanResponse(response.getResponse());
+    @Override
+    protected CompletableFuture<String> completeAsync(String prompt) {
+        var generation = client.generateAsync(modelName, prompt);
+        return cancelling(generation.thenApply(generated -> getText(prompt, generated)), generation);
+    }
 
-                // Cache response
-                cache.putAll(key, values);
+    @Override
+    protected CompletableFuture<Void> completeStreaming(String prompt, Consumer<String> chunks) {
+        var generation = client.generateStreaming(modelName, prompt, chunks);
+        return cancelling(generation.thenAccept(generated -> getText(prompt, generated)), generation);
+    }
 
-            } catch (Exception e) {
-                return null;
-            }
+    private String getText(String prompt, OllamaClient.Generation generation) {
+        if (generation.truncated()) {
+            recordTruncation(prompt);
         }
-
-        var faker = new Faker();
-
-        List<String> strings = cache.get(key);
-        String value = faker.options().nextElement(strings);
-        cache.remove(key, value);
-        return value;
+        if (generation.promptTokens() > 0 || generation.completionTokens() > 0) {
+            recordTokens(prompt, generation.promptTokens(), generation.completionTokens());
+        }
+        return generation.response();
     }
 
-    private String createPrompt(String key, FakerContext context) {
-
-        PromptBuilder promptBuilder =
-                new PromptBuilder()
-                        .addLine("You are an generator of fake data which looks like real data.")
-                        .addLine("Given a question, answer ONLY with json outputs.")
-                        .addLine("Generate a single list of " + amountOfItemsToGenerate + " items of " + formatKey(key))
-                        .addLine("Generate the list in " + context.getLocale().getDisplayLanguage());
-
-        return promptBuilder.build();
+    @Override
+    protected PromptTemplate getDefaultPromptTemplate() {
+        return PROMPT_TEMPLATE;
     }
 
-    private List<String> cleanResponse(String json) {
+    @Override
+    protected List<String> parseValues(String json) {
         // Sometimes Ollama returns a list of comma or newline separated responses.
         // For now, let's ignore that and just return the first entry in the list.
         String stripped = json.strip()
@@ -120,42 +107,4 @@ public class OllamaFakeValuesService extends FakeValuesService {
         Type listType = new TypeToken<List<String>>() {}.getType();
         return gson.fromJson(stripped, listType);
     }
-
-    private String formatKey(String key) {
-
-        String[] split = key.split("\\.");
-
-        var prefix = split[0].replaceAll("_", " ");
-        var postfix = split[1].replaceAll("_", " ");
-
-        if (useFullKey) {
-            return prefix + " " + splitCamelCase(postfix).replaceAll(" {2,}", " ");
-        } else {
-            return splitCamelCase(postfix).replaceAll(" {2,}", " ");
-        }
-    }
-
-    private String splitCamelCase(String s) {
-        return StringUtils.join(StringUtils.splitByCharacterTypeCamelCase(s), ' ');
-    }
-
-    @Override
-    public String resolve(String key, Object current, ProviderRegistration root, Supplier<String> exceptionMessage, FakerContext context) {
-        // TODO
-        return super.resolve(key, current, root, exceptionMessage, context);
-    }
-
-    @Override
-    protected String resolveExpression(String expression, Object current, ProviderRegistration root, FakerContext context) {
-        // TODO
-        return super.resolveExpression(expression, current, root, context);
-    }
-
-    public void setUseFullKey(boolean useFullKey) {
-        this.useFullKey = useFullKey;
-    }
-
-    public void setAmountOfItemsToGenerate(int amountOfItemsToGenerate) {
-        this.amountOfItemsToGenerate = amountOfItemsToGenerate;
-    }
-}
\ No newline at end of file
+}
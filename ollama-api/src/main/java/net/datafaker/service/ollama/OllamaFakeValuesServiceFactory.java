@@ -0,0 +1,31 @@
+package net.datafaker.service.ollama;
+
+import net.datafaker.service.llm.LlmFakeValuesService;
+import net.datafaker.service.llm.LlmFakeValuesServiceFactory;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Creates {@link OllamaFakeValuesService}s by the name "ollama". Supported properties are "model" and "endpoint",
+ * the base urls of the Ollama instances to use, separated by commas.
+ */
+public class OllamaFakeValuesServiceFactory implements LlmFakeValuesServiceFactory {
+
+    @Override
+    public String getName() {
+        return "ollama";
+    }
+
+    @Override
+    public LlmFakeValuesService create(Map<String, String> properties) {
+        String model = properties.getOrDefault("model", "gemma");
+        String endpoint = properties.get("endpoint");
+        if (endpoint == null) {
+            return new OllamaFakeValuesService(model);
+        }
+        return new OllamaFakeValuesService(model, new OllamaClient(Arrays.stream(endpoint.split(","))
+                .map(String::strip)
+                .toList()));
+    }
+}
@@ -0,0 +1,84 @@
+package net.datafaker.service.ollama;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stand-in for an Ollama instance, which answers every generation with the same values and counts the requests.
+ */
+class FakeOllamaServer implements AutoCloseable {
+
+    static final String ANSWER = "{\"response\":\"[\\\"Alice\\\"]\",\"done\":true,\"prompt_eval_count\":3,\"eval_count\":5}";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final CountDownLatch released = new CountDownLatch(1);
+    private volatile int status = 200;
+    private volatile boolean blocking;
+
+    FakeOllamaServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/api/generate", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        exchange.getRequestBody().readAllBytes();
+        try {
+            if (blocking && !released.await(5, TimeUnit.SECONDS)) {
+                throw new IOException("Never released");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] body = (status == 200 ? ANSWER : "{\"error\":\"overloaded\"}").getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    String url() {
+        return "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    int getRequests() {
+        return requests.get();
+    }
+
+    void setStatus(int status) {
+        this.status = status;
+    }
+
+    /**
+     * Holds every answer until {@link #release()} is called, so requests stay outstanding.
+     */
+    void block() {
+        blocking = true;
+    }
+
+    void release() {
+        released.countDown();
+    }
+
+    @Override
+    public void close() {
+        release();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,106 @@
+package net.datafaker.service.ollama;
+
+import net.datafaker.service.llm.ModelRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OllamaClientTest {
+
+    @Test
+    void generationsAreParsed() throws Exception {
+        try (FakeOllamaServer server = new FakeOllamaServer()) {
+            OllamaClient client = new OllamaClient(List.of(server.url()));
+
+            assertThat(client.generate("gemma", "prompt"))
+                    .isEqualTo(new OllamaClient.Generation("[\"Alice\"]", 3, 5, false));
+        }
+    }
+
+    @Test
+    void idleInstancesTakeTurns() throws Exception {
+        try (FakeOllamaServer first = new FakeOllamaServer(); FakeOllamaServer second = new FakeOllamaServer()) {
+            OllamaClient client = new OllamaClient(List.of(first.url(), second.url()));
+
+            for (int i = 0; i < 4; i++) {
+                client.generate("gemma", "prompt");
+            }
+
+            assertThat(first.getRequests()).isEqualTo(2);
+            assertThat(second.getRequests()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void requestsGoToTheInstanceWithTheLeastOutstandingRequests() throws Exception {
+        try (FakeOllamaServer first = new FakeOllamaServer(); FakeOllamaServer second = new FakeOllamaServer()) {
+            OllamaClient client = new OllamaClient(List.of(first.url(), second.url()));
+            second.block();
+
+            client.generate("gemma", "prompt");
+            CompletableFuture<OllamaClient.Generation> outstanding = client.generateAsync("gemma", "prompt");
+            awaitRequests(second, 1);
+
+            // Even when it's the turn of the second instance, it's busy
+            for (int i = 0; i < 3; i++) {
+                client.generate("gemma", "prompt");
+            }
+            assertThat(first.getRequests()).isEqualTo(4);
+            assertThat(second.getRequests()).isEqualTo(1);
+
+            second.release();
+            assertThat(outstanding.get(5, TimeUnit.SECONDS).response()).isEqualTo("[\"Alice\"]");
+        }
+    }
+
+    @Test
+    void errorResponsesReleaseTheInstance() throws Exception {
+        try (FakeOllamaServer first = new FakeOllamaServer(); FakeOllamaServer second = new FakeOllamaServer()) {
+            OllamaClient client = new OllamaClient(List.of(first.url(), second.url()));
+            first.setStatus(503);
+
+            assertThatThrownBy(() -> client.generate("gemma", "prompt")).isInstanceOf(ModelRequestException.class);
+            client.generate("gemma", "prompt");
+            // An instance which still counted the failed request would be skipped
+            assertThatThrownBy(() -> client.generateAsync("gemma", "prompt").join())
+                    .hasCauseInstanceOf(ModelRequestException.class);
+
+            assertThat(first.getRequests()).isEqualTo(2);
+            assertThat(second.getRequests()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void failedRequestsReleaseTheInstance() throws Exception {
+        String unreachable;
+        try (FakeOllamaServer stopped = new FakeOllamaServer()) {
+            unreachable = stopped.url();
+        }
+        try (FakeOllamaServer second = new FakeOllamaServer()) {
+            OllamaClient client = new OllamaClient(List.of(unreachable, second.url()));
+
+            assertThatThrownBy(() -> client.generateAsync("gemma", "prompt").join())
+                    .isInstanceOf(CompletionException.class)
+                    .hasCauseInstanceOf(IOException.class);
+            client.generate("gemma", "prompt");
+            // An instance which still counted the failed request would be skipped
+            assertThatThrownBy(() -> client.generate("gemma", "prompt")).isInstanceOf(IOException.class);
+
+            assertThat(second.getRequests()).isEqualTo(1);
+        }
+    }
+
+    private static void awaitRequests(FakeOllamaServer server, int requests) throws InterruptedException {
+        for (int i = 0; i < 500 && server.getRequests() < requests; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(server.getRequests()).isEqualTo(requests);
+    }
+}
@@ -0,0 +1,32 @@
+package net.datafaker.service.ollama;
+
+import net.datafaker.service.llm.LlmFakeValuesServiceFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OllamaFakeValuesServiceFactoryTest {
+
+    @Test
+    void serviceIsFoundByName() {
+        assertThat(LlmFakeValuesServiceFactory.find("ollama", getClass().getClassLoader()))
+                .isInstanceOf(OllamaFakeValuesServiceFactory.class);
+    }
+
+    @Test
+    void endpointsAreSeparatedByCommas() throws Exception {
+        try (FakeOllamaServer first = new FakeOllamaServer(); FakeOllamaServer second = new FakeOllamaServer()) {
+            OllamaFakeValuesService service = (OllamaFakeValuesService) new OllamaFakeValuesServiceFactory()
+                    .create(Map.of("model", "llama3", "endpoint", first.url() + " , " + second.url()));
+
+            assertThat(service.getModelName()).isEqualTo("llama3");
+            for (int i = 0; i < 4; i++) {
+                assertThat(service.complete("prompt")).isEqualTo("[\"Alice\"]");
+            }
+            assertThat(first.getRequests()).isEqualTo(2);
+            assertThat(second.getRequests()).isEqualTo(2);
+        }
+    }
+}
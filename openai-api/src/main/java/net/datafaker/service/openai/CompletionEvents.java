@@ -0,0 +1,82 @@
+package net.datafaker.service.openai;
+
+import com.google.gson.Gson;
+import net.datafaker.service.openai.model.Choice;
+import net.datafaker.service.openai.model.Response;
+import net.datafaker.service.openai.model.Usage;
+
+import java.util.function.Consumer;
+
+/**
+ * Parses the server-sent events of a streamed completion, one line at a time. Every event is a "data:" line with a
+ * json chunk of the completion, the stream ends with "data: [DONE]". When usage is requested, the last chunk has no
+ * choices, only the usage of the whole completion.
+ */
+class CompletionEvents {
+
+    private static final String EVENT_DATA = "data:";
+    private static final String EVENT_DONE = "[DONE]";
+    private static final String FINISH_REASON_LENGTH = "length";
+
+    private final Gson gson;
+    private final Consumer<String> chunks;
+
+    private int characters;
+    private boolean truncated;
+    private Usage usage;
+
+    /**
+     * @param chunks Gets the text of every chunk, as soon as it arrives.
+     */
+    CompletionEvents(Gson gson, Consumer<String> chunks) {
+        this.gson = gson;
+        this.chunks = chunks;
+    }
+
+    void onLine(String line) {
+        // Other fields, such as "event:", and comments are ignored
+        if (!line.startsWith(EVENT_DATA)) {
+            return;
+        }
+        String data = line.substring(EVENT_DATA.length()).strip();
+        if (data.equals(EVENT_DONE)) {
+            return;
+        }
+
+        Response event = gson.fromJson(data, Response.class);
+        if (event.getUsage() != null) {
+            usage = event.getUsage();
+        }
+        if (event.getChoices() != null && !event.getChoices().isEmpty()) {
+            Choice choice = event.getChoices().get(0);
+            if (choice.getText() != null) {
+                characters += choice.getText().length();
+                chunks.accept(choice.getText());
+            }
+            if (FINISH_REASON_LENGTH.equals(choice.getFinishReason())) {
+                truncated = true;
+            }
+        }
+    }
+
+    /**
+     * @return The amount of characters of the text so far.
+     */
+    int getCharacters() {
+        return characters;
+    }
+
+    /**
+     * @return Whether the model stopped because it reached the maximum amount of tokens.
+     */
+    boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * @return The usage of the whole completion, or null if the model didn't report it.
+     */
+    Usage getUsage() {
+        return usage;
+    }
+}
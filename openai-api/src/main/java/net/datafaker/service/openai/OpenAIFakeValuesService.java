@@ -1,17 +1,15 @@
 package net.datafaker.service.openai;
 
-import com.google.common.collect.ArrayListMultimap;
 import com.google.gson.Gson;
-import net.datafaker.Faker;
-import net.datafaker.providers.base.AbstractProvider;
-import net.datafaker.providers.base.BaseFaker;
-import net.datafaker.providers.base.ProviderRegistration;
-import net.datafaker.service.FakeValuesService;
-import net.datafaker.service.FakerContext;
+import net.datafaker.service.llm.LineSubscriber;
+import net.datafaker.service.llm.LlmFakeValuesService;
+import net.datafaker.service.llm.ModelRequestException;
+import net.datafaker.service.llm.PromptTemplate;
 import net.datafaker.service.openai.model.OpenAIModel;
 import net.datafaker.service.openai.model.Request;
 import net.datafaker.service.openai.model.Response;
-import org.apache.commons.lang3.StringUtils;
+import net.datafaker.service.openai.model.StreamOptions;
+import net.datafaker.service.openai.model.Usage;
 
 import java.net.URI;
 import java.net.http.HttpClient;
@@ -19,12 +17,20 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.util.List;
-import java.util.function.Supplier;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
-public class OpenAIFakeValuesService extends FakeValuesService {
+public class OpenAIFakeValuesService extends LlmFakeValuesService {
+
+    private static final System.Logger LOGGER = System.getLogger(OpenAIFakeValuesService.class.getName());
 
     private static final String OPEN_API_COMPLETION_ENDPOINT = "https://api.openai.com/v1/completions";
     private static final String APPLICATION_JSON = "application/json";
+    private static final String FINISH_REASON_LENGTH = "length";
+
+    private static final PromptTemplate PROMPT_TEMPLATE = PromptTemplate.of(
+            "List {amount} {language} {key}. Response should be a json object, with array field named \"values\".");
 
     private final HttpClient httpClient = HttpClient.newBuilder()
             .version(HttpClient.Version.HTTP_2)
@@ -33,25 +39,12 @@ public class OpenAIFakeValuesService extends FakeValuesService {
 
     private final Gson gson = new Gson();
 
-    private final ArrayListMultimap<String, String> cache = ArrayListMultimap.create();
-
     private final String apiKey;
     private final String modelName;
     private final Integer maxTokens;
     private final Double temperature;
 
-    /**
-     * Keys are either the faker name + property (full:true), such as person + name, or only the property (full:false), such as "name".
-     * <p>
-     * Depending on your use case, one might provider better results than the other.
-     */
-    private boolean useFullKey = false;
-
-    /**
-     * Controls the amount of items to generate. These items are cached, so to speed up the process, set this to high amount,
-     * but the higher the amount, the higher the costs (don't forget to set the maxTokens to an appropriate amount too).
-     */
-    private int amountOfItemsToGenerate = 5;
+    private URI endpoint = URI.create(OPEN_API_COMPLETION_ENDPOINT);
 
     /**
      * Creates a new instance with sane defaults, works for most cases.
@@ -72,6 +65,7 @@ public class OpenAIFakeValuesService extends FakeValuesService {
      *                    As the temperature approaches zero, the model will become deterministic and repetitive.
      */
     public OpenAIFakeValuesService(String apiKey, String modelName, Integer maxTokens, Double temperature) {
+        super(5);
         this.apiKey = apiKey;
         this.modelName = modelName;
         this.maxTokens = maxTokens;
@@ -91,101 +85,138 @@ public class OpenAIFakeValuesService extends FakeValuesService {
         this(apiKey, model.getModelName(), maxTokens, temperature);
     }
 
+    /**
+     * Sends the completions to another endpoint which implements the OpenAI completions API, such as a proxy.
+     *
+     * @param endpoint The url of the completions endpoint, defaults to https://api.openai.com/v1/completions
+     */
+    public void setEndpoint(URI endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    protected String getModelName() {
+        return modelName;
+    }
+
     @Override
-    public String resolve(String key, Object current, BaseFaker root, FakerContext context) {
-        return super.resolve(key, current, root, context);
+    protected int getMaxCompletionTokens() {
+        return maxTokens == null ? 0 : maxTokens;
     }
 
     @Override
-    public String resolve(String key, AbstractProvider provider, FakerContext context) {
-        if (!cache.containsKey(key)) {
-            var prompt = createPrompt(key, context);
-            var apiRequest = new Request(modelName, prompt, maxTokens, temperature);
-            System.out.println("Using prompt: " + prompt);
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(OPEN_API_COMPLETION_ENDPOINT))
-                    .header("Content-Type", APPLICATION_JSON)
-                    .header("Authorization", "Bearer " + apiKey)
-                    .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(apiRequest)))
-                    .build();
+    protected String complete(String prompt) throws Exception {
+        HttpResponse<String> httpResponse = httpClient.send(createRequest(prompt), HttpResponse.BodyHandlers.ofString());
+        return getText(prompt, httpResponse);
+    }
 
+    @Override
+    protected CompletableFuture<String> completeAsync(String prompt) {
+        var request = httpClient.sendAsync(createRequest(prompt), HttpResponse.BodyHandlers.ofString());
+        return cancelling(request.thenApply(httpResponse -> {
             try {
-                HttpResponse<String> httpResponse = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-                Response jsonResponse = gson.fromJson(httpResponse.body(), Response.class);
-
-                if (jsonResponse.getChoices().isEmpty()) {
-                    return null;
-                } else {
-                    List<String> response = createResponse(jsonResponse.getChoices().get(0).getText());
-
-                    // Cache response
-                    cache.putAll(key, response);
-                }
-            } catch (Exception e) {
-                return null;
+                return getText(prompt, httpResponse);
+            } catch (ModelRequestException e) {
+                throw new CompletionException(e);
             }
-        }
-
-        var faker = new Faker();
-
-        List<String> strings = cache.get(key);
-        String value = faker.options().nextElement(strings);
-        cache.remove(key, value);
-        return value;
+        }), request);
     }
 
-    private String createPrompt(String key, FakerContext context) {
-        var toJson = "Response should be a json object, with array field named \"values\"";
-
-        return "List " + amountOfItemsToGenerate + " " + context.getLocale().getDisplayLanguage() + " " + formatKey(key) + ". " + toJson + ".";
+    /**
+     * Streams the completion as server-sent events, every event contains the next few tokens of the text. The tokens
+     * are recorded once the stream ends, using the usage of the last event, or an estimate when the endpoint doesn't
+     * report it.
+     */
+    @Override
+    protected CompletableFuture<Void> completeStreaming(String prompt, Consumer<String> chunks) {
+        var apiRequest = new Request(modelName, prompt, maxTokens, temperature);
+        apiRequest.setStream(true);
+        apiRequest.setStreamOptions(new StreamOptions(true));
+
+        // Events are parsed on a thread of the http client
+        var events = new CompletionEvents(gson, chunks);
+        var lines = new LineSubscriber(events::onLine);
+        var request = httpClient.sendAsync(createRequest(apiRequest), HttpResponse.BodyHandlers.fromLineSubscriber(lines));
+        CompletableFuture<Void> done = request.thenAccept(httpResponse -> {
+            if (httpResponse.statusCode() != 200) {
+                throw new CompletionException(ModelRequestException.of(httpResponse, ""));
+            }
+            record(prompt, events);
+        });
+        // Cancelling stops the stream, so the model stops generating
+        done.whenComplete((result, failure) -> {
+            if (done.isCancelled()) {
+                lines.cancel();
+                request.cancel(true);
+            }
+        });
+        return done;
     }
 
-    private List<String> createResponse(String json) {
-        // Sometimes OpenAPI returns a list of comma or newline separated responses.
-        // For now, let's ignore that and just return the first entry in the list.
+    private HttpRequest createRequest(String prompt) {
+        return createRequest(new Request(modelName, prompt, maxTokens, temperature));
+    }
 
-        String stripped = json.strip().replaceAll("\n", "");
+    private HttpRequest createRequest(Request apiRequest) {
+        if (LOGGER.isLoggable(System.Logger.Level.DEBUG)) {
+            LOGGER.log(System.Logger.Level.DEBUG, "Using prompt: " + apiRequest.getPrompt());
+        }
 
-        return gson.fromJson(stripped, ValueList.class).getValues();
+        return HttpRequest.newBuilder()
+                .uri(endpoint)
+                .header("Content-Type", APPLICATION_JSON)
+                .header("Authorization", "Bearer " + apiKey)
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(apiRequest)))
+                .build();
     }
 
-    private String formatKey(String key) {
-
-        String[] split = key.split("\\.");
+    private String getText(String prompt, HttpResponse<String> httpResponse) throws ModelRequestException {
+        if (httpResponse.statusCode() != 200) {
+            throw ModelRequestException.of(httpResponse, httpResponse.body());
+        }
+        Response jsonResponse = gson.fromJson(httpResponse.body(), Response.class);
 
-        var prefix = split[0].replaceAll("_", " ");
-        var postfix = split[1].replaceAll("_", " ");
+        if (!jsonResponse.getChoices().isEmpty()
+                && FINISH_REASON_LENGTH.equals(jsonResponse.getChoices().get(0).getFinishReason())) {
+            recordTruncation(prompt);
+        }
+        Usage usage = jsonResponse.getUsage();
+        if (usage != null && usage.getPromptTokens() != null && usage.getCompletionTokens() != null) {
+            recordTokens(prompt, usage.getPromptTokens(), usage.getCompletionTokens());
+        }
 
-        if (useFullKey) {
-            return prefix + " " + splitCamelCase(postfix).replaceAll(" {2,}", " ");
+        if (jsonResponse.getChoices().isEmpty()) {
+            return null;
         } else {
-            return splitCamelCase(postfix).replaceAll(" {2,}", " ");
+            return jsonResponse.getChoices().get(0).getText();
         }
     }
 
-    private String splitCamelCase(String s) {
-        return StringUtils.join(StringUtils.splitByCharacterTypeCamelCase(s), ' ');
-    }
-
     @Override
-    public String resolve(String key, Object current, ProviderRegistration root, Supplier<String> exceptionMessage, FakerContext context) {
-        // TODO
-        return super.resolve(key, current, root, exceptionMessage, context);
+    protected PromptTemplate getDefaultPromptTemplate() {
+        return PROMPT_TEMPLATE;
     }
 
     @Override
-    protected String resolveExpression(String expression, Object current, ProviderRegistration root, FakerContext context) {
-        // TODO
-        return super.resolveExpression(expression, current, root, context);
-    }
+    protected List<String> parseValues(String json) {
+        // Sometimes OpenAPI returns a list of comma or newline separated responses.
+        // For now, let's ignore that and just return the first entry in the list.
 
-    public void setUseFullKey(boolean useFullKey) {
-        this.useFullKey = useFullKey;
+        String stripped = json.strip().replaceAll("\n", "");
+
+        return gson.fromJson(stripped, ValueList.class).getValues();
     }
 
-    public void setAmountOfItemsToGenerate(int amountOfItemsToGenerate) {
-        this.amountOfItemsToGenerate = amountOfItemsToGenerate;
+    private void record(String prompt, CompletionEvents events) {
+        if (events.isTruncated()) {
+            recordTruncation(prompt);
+        }
+        Usage usage = events.getUsage();
+        if (usage != null && usage.getPromptTokens() != null && usage.getCompletionTokens() != null) {
+            recordTokens(prompt, usage.getPromptTokens(), usage.getCompletionTokens());
+        } else {
+            recordTokens(prompt, estimateTokens(prompt.length()), estimateTokens(events.getCharacters()));
+        }
     }
 }
 
@@ -0,0 +1,38 @@
+package net.datafaker.service.openai;
+
+import net.datafaker.service.llm.LlmFakeValuesService;
+import net.datafaker.service.llm.LlmFakeValuesServiceFactory;
+import net.datafaker.service.openai.model.OpenAIModel;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * Creates {@link OpenAIFakeValuesService}s by the name "openai". Supported properties are "apiKey" (defaults to the
+ * OPENAI_API_KEY environment variable), "model", "maxTokens", "temperature" and "endpoint".
+ */
+public class OpenAIFakeValuesServiceFactory implements LlmFakeValuesServiceFactory {
+
+    @Override
+    public String getName() {
+        return "openai";
+    }
+
+    @Override
+    public LlmFakeValuesService create(Map<String, String> properties) {
+        String apiKey = properties.getOrDefault("apiKey", System.getenv("OPENAI_API_KEY"));
+        if (apiKey == null) {
+            throw new IllegalArgumentException("An apiKey is required, or the OPENAI_API_KEY environment variable");
+        }
+        OpenAIFakeValuesService service = new OpenAIFakeValuesService(
+                apiKey,
+                properties.getOrDefault("model", OpenAIModel.TEXT_DAVINCI_003.getModelName()),
+                Integer.valueOf(properties.getOrDefault("maxTokens", "500")),
+                Double.valueOf(properties.getOrDefault("temperature", "0.5")));
+        String endpoint = properties.get("endpoint");
+        if (endpoint != null) {
+            service.setEndpoint(URI.create(endpoint));
+        }
+        return service;
+    }
+}
@@ -20,6 +20,12 @@ public class Request {
     @SerializedName("temperature")
     @Expose
     private Double temperature;
+    @SerializedName("stream")
+    @Expose
+    private Boolean stream;
+    @SerializedName("stream_options")
+    @Expose
+    private StreamOptions streamOptions;
 
     /**
      * @param maxTokens
@@ -67,4 +73,20 @@ public class Request {
         this.temperature = temperature;
     }
 
+    public Boolean getStream() {
+        return stream;
+    }
+
+    public void setStream(Boolean stream) {
+        this.stream = stream;
+    }
+
+    public StreamOptions getStreamOptions() {
+        return streamOptions;
+    }
+
+    public void setStreamOptions(StreamOptions streamOptions) {
+        this.streamOptions = streamOptions;
+    }
+
 }
@@ -0,0 +1,45 @@
+package net.datafaker.service.openai;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompletionEventsTest {
+
+    private final List<String> chunks = new ArrayList<>();
+    private final CompletionEvents events = new CompletionEvents(new Gson(), chunks::add);
+
+    @Test
+    void textIsPassedOnAsItArrives() {
+        // A value can be split over multiple events
+        events.onLine("data: {\"choices\":[{\"text\":\"{\\\"values\\\": [\\\"Al\",\"index\":0,\"finish_reason\":null}]}");
+        events.onLine("");
+        events.onLine("data: {\"choices\":[{\"text\":\"ice\\\", \\\"Bob\\\"]}\",\"index\":0,\"finish_reason\":\"stop\"}]}");
+        events.onLine("");
+        events.onLine("data: {\"choices\":[],\"usage\":{\"prompt_tokens\":12,\"completion_tokens\":9,\"total_tokens\":21}}");
+        events.onLine("");
+        events.onLine("data: [DONE]");
+
+        assertThat(String.join("", chunks)).isEqualTo("{\"values\": [\"Alice\", \"Bob\"]}");
+        assertThat(events.getCharacters()).isEqualTo(28);
+        assertThat(events.isTruncated()).isFalse();
+        assertThat(events.getUsage().getPromptTokens()).isEqualTo(12);
+        assertThat(events.getUsage().getCompletionTokens()).isEqualTo(9);
+    }
+
+    @Test
+    void otherLinesAreIgnored() {
+        events.onLine(": keep-alive");
+        events.onLine("event: completion");
+        events.onLine("data:{\"choices\":[{\"text\":\"[\\\"Alice\\\"\",\"index\":0,\"finish_reason\":\"length\"}]}");
+        events.onLine("data: [DONE]");
+
+        assertThat(chunks).containsExactly("[\"Alice\"");
+        assertThat(events.isTruncated()).isTrue();
+        assertThat(events.getUsage()).isNull();
+    }
+}